@@ -1,4 +1,5 @@
 import axios from 'axios';
+import { prepareAnswerAudio } from '../utils/answerAudio';
 
 const API_BASE_URL = 'http://localhost:8080/api/v1';
 
@@ -40,7 +41,14 @@ const voiceInterviewService = {
     submitAudioAnswer: async (sessionId, audioBlob) => {
         try {
             const formData = new FormData();
-            formData.append('audio', audioBlob, 'audio.webm');
+            // Тишина обрезается в браузере, запись уходит сжатой (Ogg/Opus); при ошибке - исходный webm
+            try {
+                const prepared = await prepareAnswerAudio(audioBlob);
+                formData.append('audio', prepared.blob, prepared.filename);
+            } catch (encodeError) {
+                console.warn('Audio preparation failed, sending original recording:', encodeError);
+                formData.append('audio', audioBlob, 'audio.webm');
+            }
 
             const response = await axios.post(
                 `${API_BASE_URL}/voice-interviews/${sessionId}/answer-audio`,
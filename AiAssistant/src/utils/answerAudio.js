@@ -0,0 +1,238 @@
+// Частота, с которой работает Whisper
+const SAMPLE_RATE = 16000;
+// Opus хранит позицию в отсчетах 48 kHz независимо от частоты входа
+const GRANULE_RATE = 48000;
+const OPUS_PRE_SKIP = 312;
+const OPUS_BITRATE = 24000;
+
+// Те же параметры VAD, что у AudioPreprocessor на сервере
+const FRAME_MS = 20;
+const VAD_THRESHOLD = 0.015;
+const MIN_SPEECH_MS = 300;
+const PADDING_MS = 200;
+
+const PACKETS_PER_PAGE = 50;
+
+/**
+ * Декодировать запись MediaRecorder и свести в 16 kHz моно
+ */
+const decodeMono = async (blob) => {
+    const AudioContextClass = window.AudioContext || window.webkitAudioContext;
+    const decodeContext = new AudioContextClass();
+    let decoded;
+    try {
+        decoded = await decodeContext.decodeAudioData(await blob.arrayBuffer());
+    } finally {
+        decodeContext.close();
+    }
+
+    // OfflineAudioContext с одним каналом сам сводит в моно и меняет частоту
+    const length = Math.max(1, Math.ceil(decoded.duration * SAMPLE_RATE));
+    const offline = new OfflineAudioContext(1, length, SAMPLE_RATE);
+    const source = offline.createBufferSource();
+    source.buffer = decoded;
+    source.connect(offline.destination);
+    source.start();
+    const rendered = await offline.startRendering();
+    return rendered.getChannelData(0);
+};
+
+/**
+ * Обрезать тишину в начале и конце по энергии 20 мс фреймов; null - речи нет
+ */
+export const trimSilence = (samples, sampleRate = SAMPLE_RATE) => {
+    const frameSize = Math.max(1, Math.round(sampleRate * FRAME_MS / 1000));
+    const frames = Math.floor(samples.length / frameSize);
+    let firstVoiced = -1;
+    let lastVoiced = -1;
+    let voicedFrames = 0;
+    for (let frame = 0; frame < frames; frame++) {
+        let sumSquares = 0;
+        for (let i = frame * frameSize; i < (frame + 1) * frameSize; i++) {
+            sumSquares += samples[i] * samples[i];
+        }
+        if (Math.sqrt(sumSquares / frameSize) >= VAD_THRESHOLD) {
+            if (firstVoiced < 0) {
+                firstVoiced = frame;
+            }
+            lastVoiced = frame;
+            voicedFrames++;
+        }
+    }
+    if (voicedFrames * FRAME_MS < MIN_SPEECH_MS) {
+        return null;
+    }
+    const paddingFrames = PADDING_MS / FRAME_MS;
+    const from = Math.max(0, firstVoiced - paddingFrames) * frameSize;
+    const to = Math.min(frames, lastVoiced + 1 + paddingFrames) * frameSize;
+    return samples.subarray(from, to);
+};
+
+// CRC-32 Ogg: полином 0x04c11db7 без отражения битов
+const CRC_TABLE = (() => {
+    const table = new Uint32Array(256);
+    for (let i = 0; i < 256; i++) {
+        let crc = i << 24;
+        for (let bit = 0; bit < 8; bit++) {
+            crc = crc & 0x80000000 ? (crc << 1) ^ 0x04c11db7 : crc << 1;
+        }
+        table[i] = crc >>> 0;
+    }
+    return table;
+})();
+
+const oggCrc = (bytes) => {
+    let crc = 0;
+    for (let i = 0; i < bytes.length; i++) {
+        crc = ((crc << 8) ^ CRC_TABLE[((crc >>> 24) ^ bytes[i]) & 0xff]) >>> 0;
+    }
+    return crc;
+};
+
+const SERIAL = 0x4f505553;
+
+/**
+ * Страница Ogg (RFC 3533) с пакетами целиком; headerType: 2 - первая страница, 4 - последняя
+ */
+const oggPage = (packets, granule, sequence, headerType) => {
+    const segments = [];
+    packets.forEach((packet) => {
+        let left = packet.length;
+        while (left >= 255) {
+            segments.push(255);
+            left -= 255;
+        }
+        segments.push(left);
+    });
+    const bodyLength = packets.reduce((sum, packet) => sum + packet.length, 0);
+    const page = new Uint8Array(27 + segments.length + bodyLength);
+    const view = new DataView(page.buffer);
+
+    page.set([0x4f, 0x67, 0x67, 0x53]);            // "OggS"
+    view.setUint8(5, headerType);
+    view.setBigUint64(6, BigInt(granule), true);
+    view.setUint32(14, SERIAL, true);
+    view.setUint32(18, sequence, true);
+    view.setUint8(26, segments.length);
+    page.set(segments, 27);
+    let offset = 27 + segments.length;
+    packets.forEach((packet) => {
+        page.set(packet, offset);
+        offset += packet.length;
+    });
+    view.setUint32(22, oggCrc(page), true);
+    return page;
+};
+
+const opusHead = (inputSampleRate) => {
+    const head = new Uint8Array(19);
+    const view = new DataView(head.buffer);
+    head.set(new TextEncoder().encode('OpusHead'));
+    view.setUint8(8, 1);                            // версия
+    view.setUint8(9, 1);                            // моно
+    view.setUint16(10, OPUS_PRE_SKIP, true);
+    view.setUint32(12, inputSampleRate, true);
+    view.setUint16(16, 0, true);                    // усиление
+    view.setUint8(18, 0);                           // mapping family
+    return head;
+};
+
+const opusTags = () => {
+    const vendor = new TextEncoder().encode('webcodecs');
+    const tags = new Uint8Array(8 + 4 + vendor.length + 4);
+    const view = new DataView(tags.buffer);
+    tags.set(new TextEncoder().encode('OpusTags'));
+    view.setUint32(8, vendor.length, true);
+    tags.set(vendor, 12);
+    view.setUint32(12 + vendor.length, 0, true);    // без комментариев
+    return tags;
+};
+
+/**
+ * Упаковать пакеты Opus в контейнер Ogg (RFC 7845); durations - длительность пакетов в микросекундах
+ */
+export const toOggOpus = (packets, durations, inputSampleRate = SAMPLE_RATE) => {
+    const pages = [
+        oggPage([opusHead(inputSampleRate)], 0, 0, 2),
+        oggPage([opusTags()], 0, 1, 0),
+    ];
+    let granule = OPUS_PRE_SKIP;
+    for (let start = 0; start < packets.length; start += PACKETS_PER_PAGE) {
+        const pagePackets = packets.slice(start, start + PACKETS_PER_PAGE);
+        durations.slice(start, start + PACKETS_PER_PAGE).forEach((duration) => {
+            granule += Math.round(duration * GRANULE_RATE / 1e6);
+        });
+        const last = start + PACKETS_PER_PAGE >= packets.length;
+        pages.push(oggPage(pagePackets, granule, pages.length, last ? 4 : 0));
+    }
+    return new Blob(pages, { type: 'audio/ogg' });
+};
+
+const OPUS_CONFIG = { codec: 'opus', sampleRate: SAMPLE_RATE, numberOfChannels: 1, bitrate: OPUS_BITRATE };
+
+const encodeOpus = async (samples) => {
+    const packets = [];
+    const durations = [];
+    let encodeError = null;
+    const encoder = new AudioEncoder({
+        output: (chunk) => {
+            const packet = new Uint8Array(chunk.byteLength);
+            chunk.copyTo(packet);
+            packets.push(packet);
+            durations.push(chunk.duration ?? FRAME_MS * 1000);
+        },
+        error: (error) => {
+            encodeError = error;
+        },
+    });
+    try {
+        encoder.configure(OPUS_CONFIG);
+        const data = new AudioData({
+            format: 'f32',
+            sampleRate: SAMPLE_RATE,
+            numberOfFrames: samples.length,
+            numberOfChannels: 1,
+            timestamp: 0,
+            data: samples,
+        });
+        encoder.encode(data);
+        data.close();
+        await encoder.flush();
+    } finally {
+        if (encoder.state !== 'closed') {
+            encoder.close();
+        }
+    }
+    if (encodeError || packets.length === 0) {
+        throw encodeError || new Error('Opus encoder produced no packets');
+    }
+    return toOggOpus(packets, durations);
+};
+
+const opusSupported = async () => {
+    if (typeof AudioEncoder === 'undefined' || typeof AudioData === 'undefined') {
+        return false;
+    }
+    const { supported } = await AudioEncoder.isConfigSupported(OPUS_CONFIG);
+    return supported;
+};
+
+/**
+ * Подготовить запись ответа к отправке: обрезать тишину и сжать в Ogg/Opus (WebCodecs).
+ * Загрузка остается сжатой (~3 KB/s против ~32 KB/s у WAV), а в Storage архивируется уже обрезанная запись.
+ * Если браузер не умеет кодировать Opus или речи не найдено - отправляется исходный webm,
+ * решение о пустой записи остается за сервером.
+ */
+export const prepareAnswerAudio = async (blob) => {
+    const original = { blob, filename: 'audio.webm' };
+    if (!(await opusSupported())) {
+        return original;
+    }
+    const speech = trimSilence(await decodeMono(blob));
+    if (!speech) {
+        return original;
+    }
+    return { blob: await encodeOpus(speech), filename: 'audio.ogg' };
+};
+
+export default prepareAnswerAudio;
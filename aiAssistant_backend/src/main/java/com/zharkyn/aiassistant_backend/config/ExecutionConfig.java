@@ -0,0 +1,104 @@
+package com.zharkyn.aiassistant_backend.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Режим выполнения блокирующих вызовов (Firestore ApiFuture.get(), Storage).
+ *
+ * spring.threads.virtual.enabled=true (Java 21+): Tomcat обрабатывает запросы на виртуальных
+ * потоках (автоконфигурация Spring Boot), и слой репозиториев тоже выполняется на виртуальных
+ * потоках - поток, ожидающий Firestore, не занимает платформенный поток.
+ * Иначе используется ограниченный пул платформенных потоков.
+ */
+@Slf4j
+@Configuration
+public class ExecutionConfig {
+
+    @Bean(name = "blockingExecutor")
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public AsyncTaskExecutor virtualBlockingExecutor() {
+        log.info("Blocking executor: virtual threads");
+        return new VirtualThreadTaskExecutor("blocking-vt-");
+    }
+
+    @Bean(name = "blockingExecutor")
+    @ConditionalOnThreading(Threading.PLATFORM)
+    public AsyncTaskExecutor platformBlockingExecutor(
+            @Value("${execution.blocking.pool-size:64}") int poolSize,
+            @Value("${execution.blocking.queue-capacity:1000}") int queueCapacity) {
+        log.info("Blocking executor: platform threads (pool={}, queue={})", poolSize, queueCapacity);
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("blocking-");
+        return executor;
+    }
+
+    /**
+     * Callback'и ApiFuture -> CompletableFuture из репозиториев. Отдельно от blockingExecutor:
+     * callback, отклоненный заполненной очередью, Guava просто теряет, и future не завершается никогда.
+     * Callback'и короткие (маппинг снимка), поэтому хватает нескольких потоков с неограниченной очередью -
+     * задача никогда не отклоняется, а блокирующая работа в этот пул не попадает.
+     */
+    @Bean(name = "firestoreCallbackExecutor")
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public AsyncTaskExecutor virtualFirestoreCallbackExecutor() {
+        return new VirtualThreadTaskExecutor("firestore-cb-vt-");
+    }
+
+    @Bean(name = "firestoreCallbackExecutor")
+    @ConditionalOnThreading(Threading.PLATFORM)
+    public AsyncTaskExecutor platformFirestoreCallbackExecutor(
+            @Value("${execution.firestore-callbacks.pool-size:4}") int poolSize) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(Integer.MAX_VALUE);
+        executor.setThreadNamePrefix("firestore-cb-");
+        return executor;
+    }
+
+    /**
+     * Транскрибация (Whisper) - отдельный пул: запросы ждут транскрипт на потоках blockingExecutor,
+     * и если бы сама транскрибация стояла в очереди того же пула, при его заполнении они ждали бы друг друга
+     */
+    @Bean(name = "transcriptionExecutor")
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public AsyncTaskExecutor virtualTranscriptionExecutor() {
+        return new VirtualThreadTaskExecutor("stt-vt-");
+    }
+
+    @Bean(name = "transcriptionExecutor")
+    @ConditionalOnThreading(Threading.PLATFORM)
+    public AsyncTaskExecutor platformTranscriptionExecutor(
+            @Value("${execution.transcription.pool-size:16}") int poolSize,
+            @Value("${execution.transcription.queue-capacity:200}") int queueCapacity) {
+        log.info("Transcription executor: platform threads (pool={}, queue={})", poolSize, queueCapacity);
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("stt-");
+        return executor;
+    }
+
+    /**
+     * Reactor-планировщик поверх blockingExecutor для Mono.fromCallable(...) в реактивных пайплайнах
+     */
+    @Bean
+    public Scheduler blockingScheduler(@Qualifier("blockingExecutor") AsyncTaskExecutor blockingExecutor) {
+        return Schedulers.fromExecutor(blockingExecutor);
+    }
+}
@@ -1,6 +1,7 @@
 package com.zharkyn.aiassistant_backend.config;
 
 import com.zharkyn.aiassistant_backend.security.JwtAuthenticationFilter;
+import jakarta.servlet.DispatcherType;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -39,7 +40,9 @@ public class SecurityConfig {
                 .csrf(AbstractHttpConfigurer::disable)
                 .cors(cors -> cors.configurationSource(corsConfigurationSource()))
                 .authorizeHttpRequests(req ->
-                        req.requestMatchers(
+                        // Async-диспетчеризация (Mono/SSE ответы) уже прошла авторизацию на исходном запросе
+                        req.dispatcherTypeMatchers(DispatcherType.ASYNC, DispatcherType.ERROR).permitAll()
+                                .requestMatchers(
                                         "/api/v1/auth/**",
                                         "/v3/api-docs",
                                         "/v3/api-docs/**",
@@ -88,6 +91,7 @@ public class SecurityConfig {
         // ✅ ИСПРАВЛЕНИЕ: Для development разрешаем все origins
         // Для production замените на конкретные домены:
         // configuration.setAllowedOrigins(Arrays.asList("http://localhost:3000", "https://yourdomain.com"));
+        // Origin WebSocket handshake проверяется отдельно - websocket.allowed-origins, см. WebSocketConfig
         configuration.setAllowedOriginPatterns(Arrays.asList("*"));
         
         // Разрешаем все HTTP методы
@@ -0,0 +1,107 @@
+package com.zharkyn.aiassistant_backend.config;
+
+import io.netty.channel.ChannelOption;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+
+/**
+ * Общие WebClient'ы для внешних LLM API.
+ * На каждый upstream (OpenAI, Gemini) - один клиент со своим пулом соединений,
+ * чтобы переиспользовать TCP/TLS соединения между запросами.
+ *
+ * Настройки пула: http.client.{openai|gemini}.*
+ */
+@Slf4j
+@Configuration
+public class WebClientConfig {
+
+    private static final String OPENAI = "openai";
+    private static final String GEMINI = "gemini";
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider openAiConnectionProvider(Environment env) {
+        return connectionProvider(OPENAI, env);
+    }
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider geminiConnectionProvider(Environment env) {
+        return connectionProvider(GEMINI, env);
+    }
+
+    @Bean
+    public WebClient openAiWebClient(WebClient.Builder webClientBuilder,
+                                     @Qualifier("openAiConnectionProvider") ConnectionProvider provider,
+                                     @Value("${openai.api.base:https://api.openai.com}") String apiBase,
+                                     Environment env) {
+        return webClientBuilder.clone()
+                .baseUrl(apiBase)
+                .clientConnector(new ReactorClientHttpConnector(httpClient(OPENAI, provider, apiBase, env)))
+                .build();
+    }
+
+    /**
+     * Базовый клиент Gemini без baseUrl - GeminiService делает mutate() с нужным URL модели,
+     * пул соединений при этом остается общим.
+     */
+    @Bean
+    public WebClient geminiWebClient(WebClient.Builder webClientBuilder,
+                                     @Qualifier("geminiConnectionProvider") ConnectionProvider provider,
+                                     @Value("${gemini.api.url}") String apiUrl,
+                                     Environment env) {
+        return webClientBuilder.clone()
+                .clientConnector(new ReactorClientHttpConnector(httpClient(GEMINI, provider, apiUrl, env)))
+                .build();
+    }
+
+    private ConnectionProvider connectionProvider(String name, Environment env) {
+        String prefix = "http.client." + name + ".";
+        int maxConnections = env.getProperty(prefix + "max-connections", Integer.class, 50);
+        int pendingAcquireMaxCount = env.getProperty(prefix + "pending-acquire-max-count", Integer.class, 500);
+        long pendingAcquireTimeoutMs = env.getProperty(prefix + "pending-acquire-timeout-ms", Long.class, 10_000L);
+        long maxIdleSeconds = env.getProperty(prefix + "max-idle-seconds", Long.class, 60L);
+        long maxLifeSeconds = env.getProperty(prefix + "max-life-seconds", Long.class, 600L);
+
+        log.info("HTTP pool '{}': maxConnections={}, pendingAcquireMaxCount={}, maxIdle={}s, maxLife={}s",
+                name, maxConnections, pendingAcquireMaxCount, maxIdleSeconds, maxLifeSeconds);
+
+        return ConnectionProvider.builder(name)
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(pendingAcquireMaxCount)
+                .pendingAcquireTimeout(Duration.ofMillis(pendingAcquireTimeoutMs))
+                .maxIdleTime(Duration.ofSeconds(maxIdleSeconds))
+                .maxLifeTime(Duration.ofSeconds(maxLifeSeconds))
+                .evictInBackground(Duration.ofSeconds(30))
+                .metrics(true)
+                .build();
+    }
+
+    private HttpClient httpClient(String name, ConnectionProvider provider, String url, Environment env) {
+        String prefix = "http.client." + name + ".";
+        int connectTimeoutMs = env.getProperty(prefix + "connect-timeout-ms", Integer.class, 5_000);
+        long responseTimeoutSeconds = env.getProperty(prefix + "response-timeout-seconds", Long.class, 60L);
+        boolean http2 = env.getProperty(prefix + "http2-enabled", Boolean.class, true);
+
+        HttpClient client = HttpClient.create(provider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMs)
+                .responseTimeout(Duration.ofSeconds(responseTimeoutSeconds))
+                // Метка uri фиксирована: в URL Gemini есть ?key=..., он не должен попасть в метрики
+                .metrics(true, uri -> name);
+
+        // HTTP/2 согласуется через ALPN, поэтому включаем его только для https
+        if (http2 && url != null && url.startsWith("https://")) {
+            client = client.protocol(HttpProtocol.H2, HttpProtocol.HTTP11).secure();
+        }
+        return client;
+    }
+}
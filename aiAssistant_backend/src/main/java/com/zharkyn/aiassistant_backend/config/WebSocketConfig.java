@@ -0,0 +1,51 @@
+package com.zharkyn.aiassistant_backend.config;
+
+import com.zharkyn.aiassistant_backend.controller.VoiceStreamWebSocketHandler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+import org.springframework.web.socket.server.standard.ServletServerContainerFactoryBean;
+
+/**
+ * WebSocket endpoint для голосового интервью в реальном времени.
+ * Аутентификация - тем же JWT фильтром на handshake (токен в ?token=).
+ * Токен в URL браузер подставит и со стороннего сайта, поэтому Origin handshake
+ * проверяется по списку websocket.allowed-origins (REST CORS это не затрагивает).
+ */
+@Configuration
+@EnableWebSocket
+public class WebSocketConfig implements WebSocketConfigurer {
+
+    private final VoiceStreamWebSocketHandler voiceStreamWebSocketHandler;
+    private final String[] allowedOrigins;
+
+    public WebSocketConfig(VoiceStreamWebSocketHandler voiceStreamWebSocketHandler,
+                           @Value("${websocket.allowed-origins:http://localhost:3000}") String[] allowedOrigins) {
+        this.voiceStreamWebSocketHandler = voiceStreamWebSocketHandler;
+        this.allowedOrigins = allowedOrigins;
+    }
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        registry.addHandler(voiceStreamWebSocketHandler, "/ws/voice-interviews/*")
+                .setAllowedOriginPatterns(allowedOrigins);
+    }
+
+    /**
+     * Фрагменты PCM с микрофона приходят бинарными сообщениями - поднимаем лимиты буферов
+     */
+    @Bean
+    public ServletServerContainerFactoryBean webSocketContainer(
+            @Value("${websocket.max-binary-message-bytes:262144}") int maxBinaryMessageBytes,
+            @Value("${websocket.max-text-message-bytes:65536}") int maxTextMessageBytes,
+            @Value("${websocket.idle-timeout-ms:120000}") long idleTimeoutMs) {
+        ServletServerContainerFactoryBean container = new ServletServerContainerFactoryBean();
+        container.setMaxBinaryMessageBufferSize(maxBinaryMessageBytes);
+        container.setMaxTextMessageBufferSize(maxTextMessageBytes);
+        container.setMaxSessionIdleTimeout(idleTimeoutMs);
+        return container;
+    }
+}
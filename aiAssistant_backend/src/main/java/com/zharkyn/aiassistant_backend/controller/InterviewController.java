@@ -5,8 +5,12 @@ import com.zharkyn.aiassistant_backend.service.InterviewService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.util.List;
 
@@ -39,18 +43,37 @@ public class InterviewController {
      * Отправить ответ на вопрос интервью
      */
     @PostMapping("/{interviewId}/answer")
-    public ResponseEntity<InterviewDtos.ChatMessageResponse> submitAnswer(
+    public Mono<ResponseEntity<InterviewDtos.ChatMessageResponse>> submitAnswer(
             @PathVariable String interviewId,
             @Valid @RequestBody InterviewDtos.UserMessageRequest request) {
-        try {
-            log.info("Submitting answer for interview: {}", interviewId);
-            InterviewDtos.ChatMessageResponse response = interviewService.postMessage(interviewId, request);
-            log.info("Answer submitted successfully");
-            return ResponseEntity.ok(response);
-        } catch (Exception e) {
-            log.error("Error submitting answer", e);
-            throw new RuntimeException("Failed to submit answer: " + e.getMessage(), e);
-        }
+        log.info("Submitting answer for interview: {}", interviewId);
+        return interviewService.postMessage(interviewId, request)
+                .map(response -> {
+                    log.info("Answer submitted successfully");
+                    return ResponseEntity.ok(response);
+                })
+                .onErrorMap(e -> {
+                    log.error("Error submitting answer", e);
+                    return new RuntimeException("Failed to submit answer: " + e.getMessage(), e);
+                });
+    }
+
+    /**
+     * Отправить ответ и получать следующий вопрос потоком (Server-Sent Events)
+     */
+    @PostMapping(value = "/{interviewId}/answer/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Object>> streamAnswer(
+            @PathVariable String interviewId,
+            @Valid @RequestBody InterviewDtos.UserMessageRequest request) {
+        log.info("Streaming answer for interview: {}", interviewId);
+        return interviewService.streamMessage(interviewId, request)
+                // Заголовки уже отправлены - ошибку передаем клиенту отдельным событием
+                .onErrorResume(e -> {
+                    log.error("Error streaming answer", e);
+                    return Flux.just(ServerSentEvent.<Object>builder("Failed to submit answer: " + e.getMessage())
+                            .event("error")
+                            .build());
+                });
     }
 
     /**
@@ -6,9 +6,12 @@ import com.zharkyn.aiassistant_backend.service.VoiceInterviewService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import reactor.core.publisher.Flux;
 
 import java.io.IOException;
 import java.util.concurrent.ExecutionException;
@@ -86,6 +89,24 @@ public class VoiceInterviewController {
         }
     }
 
+    /**
+     * Аудио-ответ с потоковой выдачей следующего вопроса (Server-Sent Events)
+     */
+    @PostMapping(value = "/{sessionId}/answer-audio/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Object>> streamAudioAnswer(
+            @PathVariable String sessionId,
+            @RequestParam("audio") MultipartFile audioFile) {
+        log.info("Streaming audio answer for interview: {}, file size: {} bytes",
+                sessionId, audioFile != null ? audioFile.getSize() : -1);
+        return voiceInterviewService.streamAudioAnswer(sessionId, audioFile)
+                .onErrorResume(e -> {
+                    log.error("Error streaming audio answer", e);
+                    return Flux.just(ServerSentEvent.<Object>builder("Error: " + e.getMessage())
+                            .event("error")
+                            .build());
+                });
+    }
+
     @GetMapping("/{sessionId}/question/{questionNumber}/audio")
     public ResponseEntity<VoiceInterviewDtos.AudioQuestionResponse> getQuestionAudio(
             @PathVariable String sessionId,
@@ -0,0 +1,239 @@
+package com.zharkyn.aiassistant_backend.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.zharkyn.aiassistant_backend.model.VoiceInterview;
+import com.zharkyn.aiassistant_backend.model.VoiceMessage;
+import com.zharkyn.aiassistant_backend.repository.VoiceInterviewRepository;
+import com.zharkyn.aiassistant_backend.repository.VoiceMessageRepository;
+import com.zharkyn.aiassistant_backend.service.OpenAIRealtimeService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.AbstractWebSocketHandler;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.Principal;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Голосовое интервью в реальном времени: /ws/voice-interviews/{sessionId}?token=JWT
+ *
+ * Браузер -> backend:
+ *  - бинарные сообщения: фрагменты PCM16 (24 kHz, mono) с микрофона, сразу уходят в input_audio_buffer.append
+ *  - {"type":"commit"} - реплика закончена, запросить ответ; {"type":"cancel"} - прервать ответ
+ * Backend -> браузер (JSON): transcript, text.delta, audio.delta (base64 PCM16), response.done, error
+ *
+ * Реплики сохраняются в voice_messages асинхронно, не задерживая поток событий;
+ * после каждого ответа AI обновляется счетчик вопросов, как и в REST-варианте.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class VoiceStreamWebSocketHandler extends AbstractWebSocketHandler {
+
+    private static final String STREAM_ATTRIBUTE = "realtimeStream";
+    private static final int SEND_TIME_LIMIT_MS = 10_000;
+    private static final int SEND_BUFFER_LIMIT_BYTES = 2 * 1024 * 1024;
+
+    private final OpenAIRealtimeService realtimeService;
+    private final VoiceInterviewRepository voiceInterviewRepository;
+    private final VoiceMessageRepository voiceMessageRepository;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+        String interviewId = interviewIdOf(session);
+        Principal principal = session.getPrincipal();
+        if (principal == null) {
+            session.close(CloseStatus.POLICY_VIOLATION.withReason("Unauthorized"));
+            return;
+        }
+
+        VoiceInterview interview = voiceInterviewRepository.getById(interviewId);
+        if (interview == null || !principal.getName().equals(interview.getUserId())) {
+            log.warn("Rejected voice stream for interview {} by user {}", interviewId, principal.getName());
+            session.close(CloseStatus.POLICY_VIOLATION.withReason("Unauthorized access to interview"));
+            return;
+        }
+
+        // Ответы AI отправляются из потока Realtime клиента - отправку в браузер сериализуем
+        WebSocketSession client = new ConcurrentWebSocketSessionDecorator(
+                session, SEND_TIME_LIMIT_MS, SEND_BUFFER_LIMIT_BYTES);
+        try {
+            OpenAIRealtimeService.RealtimeStream stream = realtimeService.openStream(
+                    buildInstructions(interview), new Relay(client, interviewId, interview.getQuestionCount()));
+            session.getAttributes().put(STREAM_ATTRIBUTE, stream);
+            log.info("Voice stream opened for interview {}", interviewId);
+        } catch (IOException e) {
+            log.warn("Cannot open Realtime stream for interview {}: {}", interviewId, e.getMessage());
+            session.close(CloseStatus.SERVICE_OVERLOAD.withReason("Realtime service is busy"));
+        }
+    }
+
+    @Override
+    protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) throws Exception {
+        OpenAIRealtimeService.RealtimeStream stream = streamOf(session);
+        if (stream == null) {
+            return;
+        }
+        ByteBuffer payload = message.getPayload();
+        byte[] pcm = new byte[payload.remaining()];
+        payload.get(pcm);
+        stream.appendAudio(pcm);
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
+        OpenAIRealtimeService.RealtimeStream stream = streamOf(session);
+        if (stream == null) {
+            return;
+        }
+        String type = objectMapper.readTree(message.getPayload()).path("type").asText();
+        switch (type) {
+            case "commit" -> stream.commit();
+            case "cancel" -> stream.cancel();
+            default -> log.debug("Unknown client message type: {}", type);
+        }
+    }
+
+    @Override
+    public void handleTransportError(WebSocketSession session, Throwable exception) {
+        log.error("Voice stream transport error", exception);
+        closeStream(session);
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        log.info("Voice stream closed with status: {}", status);
+        closeStream(session);
+    }
+
+    private OpenAIRealtimeService.RealtimeStream streamOf(WebSocketSession session) {
+        return (OpenAIRealtimeService.RealtimeStream) session.getAttributes().get(STREAM_ATTRIBUTE);
+    }
+
+    private void closeStream(WebSocketSession session) {
+        OpenAIRealtimeService.RealtimeStream stream =
+                (OpenAIRealtimeService.RealtimeStream) session.getAttributes().remove(STREAM_ATTRIBUTE);
+        if (stream != null) {
+            stream.close();
+        }
+    }
+
+    private String interviewIdOf(WebSocketSession session) {
+        String path = session.getUri() != null ? session.getUri().getPath() : "";
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    private String buildInstructions(VoiceInterview interview) {
+        return "You are a friendly but professional interviewer. " +
+                "The candidate is applying for the position of " + nullToEmpty(interview.getPositionTitle()) +
+                " at " + nullToEmpty(interview.getCompanyName()) + ". " +
+                "Ask exactly one question per turn, 20 questions in total. " +
+                "Follow this order: 1-5 Background, 6-13 Situational, 14-20 Technical. " +
+                "Use concise wording and the candidate's language. No preamble, just the question text.";
+    }
+
+    private static String nullToEmpty(String s) {
+        return s == null ? "" : s;
+    }
+
+    /**
+     * Пересылает события Realtime в браузер и асинхронно сохраняет реплики
+     */
+    private class Relay implements OpenAIRealtimeService.RealtimeListener {
+
+        private final WebSocketSession client;
+        private final String interviewId;
+        private final AtomicInteger questionCount;
+
+        private Relay(WebSocketSession client, String interviewId, Integer questionCount) {
+            this.client = client;
+            this.interviewId = interviewId;
+            this.questionCount = new AtomicInteger(questionCount != null ? questionCount : 0);
+        }
+
+        @Override
+        public void onInputTranscript(String transcript) {
+            send(event("transcript").put("text", transcript));
+            persist("user", transcript);
+        }
+
+        @Override
+        public void onTextDelta(String delta) {
+            send(event("text.delta").put("delta", delta));
+        }
+
+        @Override
+        public void onAudioDelta(String base64Audio) {
+            send(event("audio.delta").put("delta", base64Audio));
+        }
+
+        @Override
+        public void onResponseDone(String text) {
+            send(event("response.done").put("text", text));
+            if (persist("assistant", text)) {
+                updateQuestionCount(questionCount.incrementAndGet());
+            }
+        }
+
+        @Override
+        public void onError(String message) {
+            send(event("error").put("message", message));
+        }
+
+        private ObjectNode event(String type) {
+            return objectMapper.createObjectNode().put("type", type);
+        }
+
+        private void send(JsonNode event) {
+            if (!client.isOpen()) {
+                return;
+            }
+            try {
+                client.sendMessage(new TextMessage(objectMapper.writeValueAsString(event)));
+            } catch (IOException | RuntimeException e) {
+                log.warn("Failed to relay event to voice client: {}", e.getMessage());
+            }
+        }
+
+        /**
+         * Время реплики фиксируется в момент события, а не при записи: асинхронные сохранения
+         * могут завершиться в другом порядке, а история читается по timestamp
+         */
+        private boolean persist(String sender, String text) {
+            if (text == null || text.isBlank()) {
+                return false;
+            }
+            VoiceMessage message = new VoiceMessage();
+            message.setSessionId(interviewId);
+            message.setSender(sender);
+            message.setTextContent(text);
+            message.setTimestamp(System.currentTimeMillis());
+            voiceMessageRepository.createAsync(message)
+                    .whenComplete((id, error) -> {
+                        if (error != null) {
+                            log.error("Failed to save {} voice message for interview {}", sender, interviewId, error);
+                        }
+                    });
+            return true;
+        }
+
+        private void updateQuestionCount(int count) {
+            voiceInterviewRepository.updateQuestionCountAsync(interviewId, count)
+                    .whenComplete((ignored, error) -> {
+                        if (error != null) {
+                            log.error("Failed to update question count for interview {}", interviewId, error);
+                        }
+                    });
+        }
+    }
+}
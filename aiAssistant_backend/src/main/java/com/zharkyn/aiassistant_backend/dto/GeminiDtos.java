@@ -1,5 +1,6 @@
 package com.zharkyn.aiassistant_backend.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -7,6 +8,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.util.List;
+import java.util.Map;
 
 public class GeminiDtos {
 
@@ -16,12 +18,55 @@ public class GeminiDtos {
     @AllArgsConstructor
     public static class GeminiRequest {
         private List<Content> contents;
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        private Content systemInstruction;
+        // Имя закешированного префикса (cachedContents/...); вместе с systemInstruction не передается
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        private String cachedContent;
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        private GenerationConfig generationConfig;
     }
 
+    /**
+     * Тело POST /v1beta/cachedContents; ttl в формате "1800s"
+     */
     @Data
     @Builder
     @NoArgsConstructor
     @AllArgsConstructor
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class CachedContentRequest {
+        private String model;
+        private Content systemInstruction;
+        private String ttl;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class CachedContentResponse {
+        private String name;
+        private String expireTime;
+    }
+
+    /**
+     * Структурированный вывод: responseMimeType=application/json и JSON-схема ответа
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class GenerationConfig {
+        private String responseMimeType;
+        private Map<String, Object> responseSchema;
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     public static class Content {
         private String role;
         private List<Part> parts;
@@ -22,6 +22,8 @@ public class InterviewSession {
     private String company; // kaspi, jusan, halyk, etc.
     private Integer currentQuestionNumber; // Текущий номер вопроса (1-20)
     private Integer totalQuestions; // Всего вопросов = 20
+    private String historySummary; // Сжатое содержание старой части диалога (для окна контекста Gemini)
+    private Integer summarizedMessageCount; // Сколько первых сообщений истории покрывает historySummary
 
     public enum InterviewStatus {
         IN_PROGRESS,
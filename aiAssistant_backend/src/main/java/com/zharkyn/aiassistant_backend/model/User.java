@@ -35,6 +35,9 @@ public class User implements UserDetails {
     
     private Timestamp createdAt;
     private Timestamp updatedAt;
+    
+    // Версия учетных данных: увеличивается при смене пароля, попадает в JWT (claim "cv")
+    private Long credentialsVersion;
 
     // Реализация UserDetails
     @Override
@@ -13,6 +13,8 @@ public class VoiceInterview {
     private String positionTitle;
     private String companyName;
     private String status;
+    // Сколько вопросов AI уже задал (счетчик вместо перечитывания всех сообщений)
+    private Integer questionCount;
     private Long createdAt;
     private Long updatedAt;
 }
\ No newline at end of file
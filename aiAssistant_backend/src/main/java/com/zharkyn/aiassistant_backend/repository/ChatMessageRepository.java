@@ -5,10 +5,13 @@ import com.google.cloud.firestore.*;
 import com.google.firebase.cloud.FirestoreClient;
 import com.zharkyn.aiassistant_backend.model.ChatMessage;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 
 /**
  * Репозиторий для работы с сообщениями чата в Firestore
@@ -19,6 +22,12 @@ public class ChatMessageRepository {
 
     private static final String COLLECTION_NAME = "chat_messages";
 
+    private final Executor callbackExecutor;
+
+    public ChatMessageRepository(@Qualifier("firestoreCallbackExecutor") Executor callbackExecutor) {
+        this.callbackExecutor = callbackExecutor;
+    }
+
     /**
      * Сохранить сообщение
      */
@@ -41,6 +50,14 @@ public class ChatMessageRepository {
         return message;
     }
 
+    /**
+     * Зарезервировать ID документа заранее (локально, без запроса в Firestore).
+     * Нужно, когда сообщение сохраняется параллельно с чтением истории.
+     */
+    public String nextId() {
+        return FirestoreClient.getFirestore().collection(COLLECTION_NAME).document().getId();
+    }
+
     /**
      * Найти все сообщения по ID сессии
      */
@@ -53,15 +70,46 @@ public class ChatMessageRepository {
                 .orderBy("timestamp", Query.Direction.ASCENDING)
                 .get();
         
-        QuerySnapshot querySnapshot = future.get();
-        List<ChatMessage> messages = querySnapshot.toObjects(ChatMessage.class);
+        List<ChatMessage> messages = toMessages(future.get());
+        log.info("Found {} messages for session {}", messages.size(), sessionId);
+        return messages;
+    }
+
+    /**
+     * Сохранить сообщение (асинхронно)
+     */
+    public CompletableFuture<ChatMessage> saveAsync(ChatMessage message) {
+        Firestore dbFirestore = FirestoreClient.getFirestore();
         
-        for (int i = 0; i < messages.size(); i++) {
-            messages.get(i).setId(querySnapshot.getDocuments().get(i).getId());
+        if (message.getId() == null || message.getId().isEmpty()) {
+            message.setId(nextId());
         }
         
-        log.info("Found {} messages for session {}", messages.size(), sessionId);
-        return messages;
+        ApiFuture<WriteResult> future = dbFirestore.collection(COLLECTION_NAME)
+                .document(message.getId())
+                .set(message);
+        return FirestoreFutures.toCompletableFuture(future, result -> {
+            log.info("Message saved with ID: {}", message.getId());
+            return message;
+        }, callbackExecutor);
+    }
+
+    /**
+     * Найти все сообщения по ID сессии (асинхронно)
+     */
+    public CompletableFuture<List<ChatMessage>> findBySessionIdOrderByTimestampAscAsync(String sessionId) {
+        Firestore dbFirestore = FirestoreClient.getFirestore();
+        
+        ApiFuture<QuerySnapshot> future = dbFirestore.collection(COLLECTION_NAME)
+                .whereEqualTo("sessionId", sessionId)
+                .orderBy("timestamp", Query.Direction.ASCENDING)
+                .get();
+        
+        return FirestoreFutures.toCompletableFuture(future, querySnapshot -> {
+            List<ChatMessage> messages = toMessages(querySnapshot);
+            log.info("Found {} messages for session {}", messages.size(), sessionId);
+            return messages;
+        }, callbackExecutor);
     }
 
     /**
@@ -82,4 +130,13 @@ public class ChatMessageRepository {
         
         log.info("Deleted all messages for session {}", sessionId);
     }
+
+    private List<ChatMessage> toMessages(QuerySnapshot querySnapshot) {
+        List<ChatMessage> messages = querySnapshot.toObjects(ChatMessage.class);
+        
+        for (int i = 0; i < messages.size(); i++) {
+            messages.get(i).setId(querySnapshot.getDocuments().get(i).getId());
+        }
+        return messages;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,42 @@
+package com.zharkyn.aiassistant_backend.repository;
+
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+/**
+ * Адаптер ApiFuture -> CompletableFuture для асинхронного API репозиториев.
+ * Результат преобразуется через callback, поток при ожидании Firestore не блокируется.
+ * Callback выполняется на firestoreCallbackExecutor (ExecutionConfig), который не отклоняет задачи.
+ */
+final class FirestoreFutures {
+
+    private FirestoreFutures() {
+    }
+
+    static <T, R> CompletableFuture<R> toCompletableFuture(ApiFuture<T> future,
+                                                           Function<T, R> mapper,
+                                                           Executor executor) {
+        CompletableFuture<R> result = new CompletableFuture<>();
+        ApiFutures.addCallback(future, new ApiFutureCallback<T>() {
+            @Override
+            public void onSuccess(T value) {
+                try {
+                    result.complete(mapper.apply(value));
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                result.completeExceptionally(t);
+            }
+        }, executor);
+        return result;
+    }
+}
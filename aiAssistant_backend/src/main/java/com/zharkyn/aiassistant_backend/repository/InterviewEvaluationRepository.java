@@ -5,11 +5,15 @@ import com.google.cloud.firestore.*;
 import com.google.firebase.cloud.FirestoreClient;
 import com.zharkyn.aiassistant_backend.model.InterviewEvaluation;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Repository;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 
 /**
  * Репозиторий для работы с оценками интервью в Firestore
@@ -19,6 +23,20 @@ import java.util.concurrent.ExecutionException;
 public class InterviewEvaluationRepository {
 
     private static final String COLLECTION_NAME = "interview_evaluations";
+    private static final int MAX_BATCH_SIZE = 500; // Лимит Firestore на один batch
+
+    private final Executor callbackExecutor;
+
+    public InterviewEvaluationRepository(@Qualifier("firestoreCallbackExecutor") Executor callbackExecutor) {
+        this.callbackExecutor = callbackExecutor;
+    }
+
+    /**
+     * ID документа оценки: одна оценка на вопрос интервью, повторная запись перезаписывает ее
+     */
+    public static String documentId(String interviewId, Integer questionNumber) {
+        return interviewId + "_" + questionNumber;
+    }
 
     /**
      * Сохранить оценку
@@ -45,6 +63,14 @@ public class InterviewEvaluationRepository {
         return evaluation;
     }
 
+    /**
+     * Сохранить несколько оценок одной пакетной записью (WriteBatch)
+     */
+    public List<InterviewEvaluation> saveAll(List<InterviewEvaluation> evaluations) 
+            throws ExecutionException, InterruptedException {
+        return saveAllAsync(evaluations).get();
+    }
+
     /**
      * Найти оценку по ID интервью и номеру вопроса
      */
@@ -83,16 +109,60 @@ public class InterviewEvaluationRepository {
                 .orderBy("questionNumber", Query.Direction.ASCENDING)
                 .get();
         
-        QuerySnapshot querySnapshot = future.get();
-        List<InterviewEvaluation> evaluations = querySnapshot.toObjects(InterviewEvaluation.class);
+        List<InterviewEvaluation> evaluations = toEvaluations(future.get());
+        log.info("Found {} evaluations for interview {}", evaluations.size(), interviewId);
+        return evaluations;
+    }
+
+    /**
+     * Получить все оценки для интервью (асинхронно)
+     */
+    public CompletableFuture<List<InterviewEvaluation>> findByInterviewIdAsync(String interviewId) {
+        Firestore dbFirestore = FirestoreClient.getFirestore();
         
-        // Устанавливаем ID из документа
-        for (int i = 0; i < evaluations.size(); i++) {
-            evaluations.get(i).setId(querySnapshot.getDocuments().get(i).getId());
+        ApiFuture<QuerySnapshot> future = dbFirestore.collection(COLLECTION_NAME)
+                .whereEqualTo("interviewId", interviewId)
+                .orderBy("questionNumber", Query.Direction.ASCENDING)
+                .get();
+        
+        return FirestoreFutures.toCompletableFuture(future, querySnapshot -> {
+            List<InterviewEvaluation> evaluations = toEvaluations(querySnapshot);
+            log.info("Found {} evaluations for interview {}", evaluations.size(), interviewId);
+            return evaluations;
+        }, callbackExecutor);
+    }
+
+    /**
+     * Сохранить несколько оценок пакетной записью (асинхронно)
+     */
+    public CompletableFuture<List<InterviewEvaluation>> saveAllAsync(List<InterviewEvaluation> evaluations) {
+        if (evaluations.isEmpty()) {
+            return CompletableFuture.completedFuture(evaluations);
         }
         
-        log.info("Found {} evaluations for interview {}", evaluations.size(), interviewId);
-        return evaluations;
+        Firestore dbFirestore = FirestoreClient.getFirestore();
+        List<CompletableFuture<List<WriteResult>>> commits = new ArrayList<>();
+        
+        for (int from = 0; from < evaluations.size(); from += MAX_BATCH_SIZE) {
+            WriteBatch batch = dbFirestore.batch();
+            
+            for (InterviewEvaluation evaluation : evaluations.subList(
+                    from, Math.min(from + MAX_BATCH_SIZE, evaluations.size()))) {
+                DocumentReference docRef = evaluation.getId() == null || evaluation.getId().isEmpty()
+                        ? dbFirestore.collection(COLLECTION_NAME).document()
+                        : dbFirestore.collection(COLLECTION_NAME).document(evaluation.getId());
+                evaluation.setId(docRef.getId());
+                batch.set(docRef, evaluation);
+            }
+            
+            commits.add(FirestoreFutures.toCompletableFuture(batch.commit(), results -> results, callbackExecutor));
+        }
+        
+        return CompletableFuture.allOf(commits.toArray(new CompletableFuture[0]))
+                .thenApply(done -> {
+                    log.info("Saved {} evaluations in batch", evaluations.size());
+                    return evaluations;
+                });
     }
 
     /**
@@ -114,4 +184,14 @@ public class InterviewEvaluationRepository {
         
         log.info("Deleted all evaluations for interview {}", interviewId);
     }
+
+    private List<InterviewEvaluation> toEvaluations(QuerySnapshot querySnapshot) {
+        List<InterviewEvaluation> evaluations = new ArrayList<>(querySnapshot.toObjects(InterviewEvaluation.class));
+        
+        // Устанавливаем ID из документа
+        for (int i = 0; i < evaluations.size(); i++) {
+            evaluations.get(i).setId(querySnapshot.getDocuments().get(i).getId());
+        }
+        return evaluations;
+    }
 }
\ No newline at end of file
@@ -8,10 +8,13 @@ import com.google.cloud.firestore.QuerySnapshot;
 import com.zharkyn.aiassistant_backend.model.Interview;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
 
 @Repository
@@ -20,10 +23,12 @@ public class InterviewRepository {
     
     private static final String COLLECTION_NAME = "interviews";
     private final Firestore firestore;
+    private final Executor callbackExecutor;
 
     @Autowired
-    public InterviewRepository(Firestore firestore) {
+    public InterviewRepository(Firestore firestore, @Qualifier("firestoreCallbackExecutor") Executor callbackExecutor) {
         this.firestore = firestore;
+        this.callbackExecutor = callbackExecutor;
     }
 
     public String create(Interview interview) throws ExecutionException, InterruptedException {
@@ -79,4 +84,21 @@ public class InterviewRepository {
         
         log.info("Interview deleted: {}", id);
     }
-}
\ No newline at end of file
+
+    public CompletableFuture<Interview> getByIdAsync(String id) {
+        return FirestoreFutures.toCompletableFuture(
+                firestore.collection(COLLECTION_NAME).document(id).get(),
+                document -> document.exists() ? document.toObject(Interview.class) : null,
+                callbackExecutor);
+    }
+
+    public CompletableFuture<List<Interview>> getByUserIdAsync(String userId) {
+        return FirestoreFutures.toCompletableFuture(
+                firestore.collection(COLLECTION_NAME)
+                        .whereEqualTo("userId", userId)
+                        .orderBy("createdAt", com.google.cloud.firestore.Query.Direction.DESCENDING)
+                        .get(),
+                querySnapshot -> querySnapshot.toObjects(Interview.class),
+                callbackExecutor);
+    }
+}
@@ -1,16 +1,28 @@
 package com.zharkyn.aiassistant_backend.repository;
 
+import com.google.cloud.firestore.DocumentReference;
 import com.google.cloud.firestore.Firestore;
 import com.google.firebase.cloud.FirestoreClient;
 import com.zharkyn.aiassistant_backend.model.InterviewSession;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 
 @Repository
 public class InterviewSessionRepository {
     private static final String COLLECTION_NAME = "interview_sessions";
 
+    private final Executor callbackExecutor;
+
+    public InterviewSessionRepository(@Qualifier("firestoreCallbackExecutor") Executor callbackExecutor) {
+        this.callbackExecutor = callbackExecutor;
+    }
+
     public InterviewSession save(InterviewSession session) throws ExecutionException, InterruptedException {
         Firestore dbFirestore = FirestoreClient.getFirestore();
         if (session.getId() == null) {
@@ -22,4 +34,81 @@ public class InterviewSessionRepository {
         }
         return session;
     }
+
+    public InterviewSession findById(String id) throws ExecutionException, InterruptedException {
+        return findByIdAsync(id).get();
+    }
+
+    public CompletableFuture<InterviewSession> saveAsync(InterviewSession session) {
+        Firestore dbFirestore = FirestoreClient.getFirestore();
+        var docRef = session.getId() == null
+                ? dbFirestore.collection(COLLECTION_NAME).document()
+                : dbFirestore.collection(COLLECTION_NAME).document(session.getId());
+        session.setId(docRef.getId());
+        return FirestoreFutures.toCompletableFuture(docRef.set(session), result -> session, callbackExecutor);
+    }
+
+    /**
+     * Обновить отдельные поля сессии, не перезаписывая документ целиком
+     */
+    public CompletableFuture<Void> updateFieldsAsync(String id, Map<String, Object> fields) {
+        Firestore dbFirestore = FirestoreClient.getFirestore();
+        return FirestoreFutures.toCompletableFuture(
+                dbFirestore.collection(COLLECTION_NAME).document(id).update(fields),
+                result -> null,
+                callbackExecutor);
+    }
+
+    /**
+     * Сохранить сводку истории, только если она покрывает больше сообщений, чем уже сохраненная
+     * (транзакция: запоздавшая сводка не затирает более новую). true - если записано.
+     */
+    public CompletableFuture<Boolean> updateHistorySummaryAsync(String id, String summary, int summarizedMessageCount) {
+        Firestore dbFirestore = FirestoreClient.getFirestore();
+        DocumentReference docRef = dbFirestore.collection(COLLECTION_NAME).document(id);
+        return FirestoreFutures.toCompletableFuture(
+                dbFirestore.runTransaction(transaction -> {
+                    Long stored = transaction.get(docRef).get().getLong("summarizedMessageCount");
+                    if (stored != null && stored >= summarizedMessageCount) {
+                        return false;
+                    }
+                    transaction.update(docRef,
+                            "historySummary", summary,
+                            "summarizedMessageCount", summarizedMessageCount);
+                    return true;
+                }),
+                written -> written,
+                callbackExecutor);
+    }
+
+    /**
+     * Найти сессию по ID (асинхронно); null, если документа нет
+     */
+    public CompletableFuture<InterviewSession> findByIdAsync(String id) {
+        Firestore dbFirestore = FirestoreClient.getFirestore();
+        return FirestoreFutures.toCompletableFuture(
+                dbFirestore.collection(COLLECTION_NAME).document(id).get(),
+                document -> document.toObject(InterviewSession.class),
+                callbackExecutor);
+    }
+
+    public CompletableFuture<List<InterviewSession>> findByUserIdAsync(String userId) {
+        Firestore dbFirestore = FirestoreClient.getFirestore();
+        return FirestoreFutures.toCompletableFuture(
+                dbFirestore.collection(COLLECTION_NAME).whereEqualTo("userId", userId).get(),
+                querySnapshot -> querySnapshot.toObjects(InterviewSession.class),
+                callbackExecutor);
+    }
+
+    public CompletableFuture<List<InterviewSession>> findByUserIdAndStatusAsync(
+            String userId, InterviewSession.InterviewStatus status) {
+        Firestore dbFirestore = FirestoreClient.getFirestore();
+        return FirestoreFutures.toCompletableFuture(
+                dbFirestore.collection(COLLECTION_NAME)
+                        .whereEqualTo("userId", userId)
+                        .whereEqualTo("status", status)
+                        .get(),
+                querySnapshot -> querySnapshot.toObjects(InterviewSession.class),
+                callbackExecutor);
+    }
 }
@@ -8,10 +8,13 @@ import com.google.cloud.firestore.QuerySnapshot;
 import com.zharkyn.aiassistant_backend.model.Message;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
 
 @Repository
@@ -20,10 +23,12 @@ public class MessageRepository {
     
     private static final String COLLECTION_NAME = "messages";
     private final Firestore firestore;
+    private final Executor callbackExecutor;
 
     @Autowired
-    public MessageRepository(Firestore firestore) {
+    public MessageRepository(Firestore firestore, @Qualifier("firestoreCallbackExecutor") Executor callbackExecutor) {
         this.firestore = firestore;
+        this.callbackExecutor = callbackExecutor;
     }
 
     public String create(Message message) throws ExecutionException, InterruptedException {
@@ -77,4 +82,21 @@ public class MessageRepository {
         
         log.info("Deleted all messages for session: {}", sessionId);
     }
-}
\ No newline at end of file
+
+    public CompletableFuture<Message> getByIdAsync(String id) {
+        return FirestoreFutures.toCompletableFuture(
+                firestore.collection(COLLECTION_NAME).document(id).get(),
+                document -> document.exists() ? document.toObject(Message.class) : null,
+                callbackExecutor);
+    }
+
+    public CompletableFuture<List<Message>> getBySessionIdAsync(String sessionId) {
+        return FirestoreFutures.toCompletableFuture(
+                firestore.collection(COLLECTION_NAME)
+                        .whereEqualTo("sessionId", sessionId)
+                        .orderBy("timestamp")
+                        .get(),
+                querySnapshot -> querySnapshot.toObjects(Message.class),
+                callbackExecutor);
+    }
+}
@@ -6,15 +6,24 @@ import com.google.cloud.firestore.Firestore;
 import com.google.cloud.firestore.QuerySnapshot;
 import com.google.firebase.cloud.FirestoreClient;
 import com.zharkyn.aiassistant_backend.model.Resume;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 
 @Repository
 public class ResumeRepository {
     private static final String COLLECTION_NAME = "resumes";
 
+    private final Executor callbackExecutor;
+
+    public ResumeRepository(@Qualifier("firestoreCallbackExecutor") Executor callbackExecutor) {
+        this.callbackExecutor = callbackExecutor;
+    }
+
     public Resume save(Resume resume) throws ExecutionException, InterruptedException {
         Firestore dbFirestore = FirestoreClient.getFirestore();
         if (resume.getId() == null) {
@@ -54,4 +63,22 @@ public class ResumeRepository {
         Firestore dbFirestore = FirestoreClient.getFirestore();
         dbFirestore.collection(COLLECTION_NAME).document(id).delete().get();
     }
-}
\ No newline at end of file
+
+    public CompletableFuture<Optional<Resume>> findByUserIdAsync(String userId) {
+        Firestore dbFirestore = FirestoreClient.getFirestore();
+        return FirestoreFutures.toCompletableFuture(
+                dbFirestore.collection(COLLECTION_NAME).whereEqualTo("userId", userId).limit(1).get(),
+                querySnapshot -> querySnapshot.isEmpty()
+                        ? Optional.<Resume>empty()
+                        : Optional.of(querySnapshot.getDocuments().get(0).toObject(Resume.class)),
+                callbackExecutor);
+    }
+
+    public CompletableFuture<Optional<Resume>> findByIdAsync(String id) {
+        Firestore dbFirestore = FirestoreClient.getFirestore();
+        return FirestoreFutures.toCompletableFuture(
+                dbFirestore.collection(COLLECTION_NAME).document(id).get(),
+                document -> document.exists() ? Optional.of(document.toObject(Resume.class)) : Optional.<Resume>empty(),
+                callbackExecutor);
+    }
+}
@@ -7,16 +7,25 @@ import com.google.cloud.firestore.QuerySnapshot;
 import com.google.cloud.firestore.WriteResult;
 import com.google.firebase.cloud.FirestoreClient;
 import com.zharkyn.aiassistant_backend.model.User;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 
 @Repository
 public class UserRepository {
 
     private static final String COLLECTION_NAME = "users";
 
+    private final Executor callbackExecutor;
+
+    public UserRepository(@Qualifier("firestoreCallbackExecutor") Executor callbackExecutor) {
+        this.callbackExecutor = callbackExecutor;
+    }
+
     public User save(User user) throws ExecutionException, InterruptedException {
         Firestore dbFirestore = FirestoreClient.getFirestore();
         if (user.getId() == null) {
@@ -53,4 +62,31 @@ public class UserRepository {
         Firestore dbFirestore = FirestoreClient.getFirestore();
         dbFirestore.collection(COLLECTION_NAME).document(userId).delete().get();
     }
+
+    public CompletableFuture<User> saveAsync(User user) {
+        Firestore dbFirestore = FirestoreClient.getFirestore();
+        var docRef = user.getId() == null
+                ? dbFirestore.collection(COLLECTION_NAME).document()
+                : dbFirestore.collection(COLLECTION_NAME).document(user.getId());
+        user.setId(docRef.getId());
+        return FirestoreFutures.toCompletableFuture(docRef.set(user), result -> user, callbackExecutor);
+    }
+
+    public CompletableFuture<Optional<User>> findByEmailAsync(String email) {
+        Firestore dbFirestore = FirestoreClient.getFirestore();
+        return FirestoreFutures.toCompletableFuture(
+                dbFirestore.collection(COLLECTION_NAME).whereEqualTo("email", email).limit(1).get(),
+                querySnapshot -> querySnapshot.isEmpty()
+                        ? Optional.<User>empty()
+                        : Optional.of(querySnapshot.getDocuments().get(0).toObject(User.class)),
+                callbackExecutor);
+    }
+
+    public CompletableFuture<Optional<User>> findByIdAsync(String id) {
+        Firestore dbFirestore = FirestoreClient.getFirestore();
+        return FirestoreFutures.toCompletableFuture(
+                dbFirestore.collection(COLLECTION_NAME).document(id).get(),
+                doc -> doc.exists() ? Optional.of(doc.toObject(User.class)) : Optional.<User>empty(),
+                callbackExecutor);
+    }
 }
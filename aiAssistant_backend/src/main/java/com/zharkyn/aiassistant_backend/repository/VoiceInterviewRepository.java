@@ -8,10 +8,13 @@ import com.google.cloud.firestore.QuerySnapshot;
 import com.zharkyn.aiassistant_backend.model.VoiceInterview;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
 
 @Repository
@@ -20,10 +23,12 @@ public class VoiceInterviewRepository {
     
     private static final String COLLECTION_NAME = "voice_interviews";
     private final Firestore firestore;
+    private final Executor callbackExecutor;
 
     @Autowired
-    public VoiceInterviewRepository(Firestore firestore) {
+    public VoiceInterviewRepository(Firestore firestore, @Qualifier("firestoreCallbackExecutor") Executor callbackExecutor) {
         this.firestore = firestore;
+        this.callbackExecutor = callbackExecutor;
     }
 
     public String create(VoiceInterview interview) throws ExecutionException, InterruptedException {
@@ -70,4 +75,38 @@ public class VoiceInterviewRepository {
         
         log.info("Voice interview updated: {}", id);
     }
-}
\ No newline at end of file
+
+    public CompletableFuture<VoiceInterview> getByIdAsync(String id) {
+        return FirestoreFutures.toCompletableFuture(
+                firestore.collection(COLLECTION_NAME).document(id).get(),
+                document -> document.exists() ? document.toObject(VoiceInterview.class) : null,
+                callbackExecutor);
+    }
+
+    public CompletableFuture<List<VoiceInterview>> getByUserIdAsync(String userId) {
+        return FirestoreFutures.toCompletableFuture(
+                firestore.collection(COLLECTION_NAME).whereEqualTo("userId", userId).get(),
+                querySnapshot -> querySnapshot.toObjects(VoiceInterview.class),
+                callbackExecutor);
+    }
+
+    public CompletableFuture<Void> updateAsync(String id, VoiceInterview interview) {
+        interview.setUpdatedAt(System.currentTimeMillis());
+        return FirestoreFutures.toCompletableFuture(
+                firestore.collection(COLLECTION_NAME).document(id).set(interview),
+                result -> null,
+                callbackExecutor);
+    }
+
+    /**
+     * Обновить только счетчик вопросов (без перезаписи остальных полей)
+     */
+    public CompletableFuture<Void> updateQuestionCountAsync(String id, int questionCount) {
+        return FirestoreFutures.toCompletableFuture(
+                firestore.collection(COLLECTION_NAME).document(id).update(
+                        "questionCount", questionCount,
+                        "updatedAt", System.currentTimeMillis()),
+                result -> null,
+                callbackExecutor);
+    }
+}
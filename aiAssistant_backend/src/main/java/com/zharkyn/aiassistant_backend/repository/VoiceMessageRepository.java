@@ -8,10 +8,13 @@ import com.google.cloud.firestore.QuerySnapshot;
 import com.zharkyn.aiassistant_backend.model.VoiceMessage;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
 
 @Repository
@@ -20,16 +23,27 @@ public class VoiceMessageRepository {
     
     private static final String COLLECTION_NAME = "voice_messages";
     private final Firestore firestore;
+    private final Executor callbackExecutor;
 
     @Autowired
-    public VoiceMessageRepository(Firestore firestore) {
+    public VoiceMessageRepository(Firestore firestore, @Qualifier("firestoreCallbackExecutor") Executor callbackExecutor) {
         this.firestore = firestore;
+        this.callbackExecutor = callbackExecutor;
     }
 
+    /**
+     * Заранее выданный ID документа - для сохранения, которое может повторяться (фоновые задачи)
+     */
+    public String nextId() {
+        return firestore.collection(COLLECTION_NAME).document().getId();
+    }
+
+    /**
+     * Сохранить сообщение. Заданные заранее ID и timestamp сохраняются, поэтому
+     * повторная запись того же сообщения перезаписывает документ, а не создает дубликат
+     */
     public String create(VoiceMessage message) throws ExecutionException, InterruptedException {
-        DocumentReference docRef = firestore.collection(COLLECTION_NAME).document();
-        message.setId(docRef.getId());
-        message.setTimestamp(System.currentTimeMillis());
+        DocumentReference docRef = documentFor(message);
         
         ApiFuture<com.google.cloud.firestore.WriteResult> result = docRef.set(message);
         result.get();
@@ -52,4 +66,29 @@ public class VoiceMessageRepository {
         log.info("Found {} voice messages for session {}", messages.size(), sessionId);
         return messages;
     }
-}
\ No newline at end of file
+
+    public CompletableFuture<String> createAsync(VoiceMessage message) {
+        DocumentReference docRef = documentFor(message);
+        return FirestoreFutures.toCompletableFuture(docRef.set(message), result -> docRef.getId(), callbackExecutor);
+    }
+
+    public CompletableFuture<List<VoiceMessage>> getBySessionIdAsync(String sessionId) {
+        return FirestoreFutures.toCompletableFuture(
+                firestore.collection(COLLECTION_NAME)
+                        .whereEqualTo("sessionId", sessionId)
+                        .orderBy("timestamp")
+                        .get(),
+                querySnapshot -> querySnapshot.toObjects(VoiceMessage.class),
+                callbackExecutor);
+    }
+
+    private DocumentReference documentFor(VoiceMessage message) {
+        if (message.getId() == null) {
+            message.setId(nextId());
+        }
+        if (message.getTimestamp() == null) {
+            message.setTimestamp(System.currentTimeMillis());
+        }
+        return firestore.collection(COLLECTION_NAME).document(message.getId());
+    }
+}
@@ -1,6 +1,8 @@
 package com.zharkyn.aiassistant_backend.security;
 
+import com.zharkyn.aiassistant_backend.model.User;
 import com.zharkyn.aiassistant_backend.service.JwtService;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -9,6 +11,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
@@ -17,13 +20,17 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.Collection;
 
 @Slf4j
 @Component
 @RequiredArgsConstructor
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
+    private static final String WS_PATH_PREFIX = "/ws/";
+
     private final JwtService jwtService;
     private final UserDetailsService userDetailsService;
+    private final TokenRevocationRegistry revocationRegistry;
 
     @Override
     protected void doFilterInternal(@NonNull HttpServletRequest request,
@@ -31,31 +38,32 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                                     @NonNull FilterChain filterChain)
             throws ServletException, IOException {
         
-        final String authHeader = request.getHeader("Authorization");
-        final String jwt;
+        final String jwt = resolveToken(request);
+        final Claims claims;
         final String userEmail;
         
         // Если нет токена, просто продолжаем
-        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+        if (jwt == null) {
             filterChain.doFilter(request, response);
             return;
         }
         
         try {
-            jwt = authHeader.substring(7);
-            userEmail = jwtService.extractUserName(jwt);
+            // Токен разбирается и проверяется ровно один раз за запрос
+            claims = jwtService.parseToken(jwt);
+            
+            // В stateless режиме пользователь берется из claims, запрос в Firestore не нужен
+            boolean handledStateless = SecurityContextHolder.getContext().getAuthentication() == null
+                    && jwtService.isStatelessEnabled()
+                    && authenticateStateless(claims, request);
+            
+            userEmail = handledStateless ? null : claims.getSubject();
             
             if (userEmail != null && SecurityContextHolder.getContext().getAuthentication() == null) {
                 UserDetails userDetails = this.userDetailsService.loadUserByUsername(userEmail);
                 
-                if (jwtService.isTokenValid(jwt, userDetails)) {
-                    UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
-                            userDetails,
-                            null,
-                            userDetails.getAuthorities()
-                    );
-                    authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                    SecurityContextHolder.getContext().setAuthentication(authToken);
+                if (jwtService.isTokenValid(claims, userDetails)) {
+                    setAuthentication(userDetails, userDetails.getAuthorities(), request);
                     log.debug("Successfully authenticated user: {}", userEmail);
                 } else {
                     log.warn("Invalid JWT token for user: {}", userEmail);
@@ -70,4 +78,52 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         
         filterChain.doFilter(request, response);
     }
+
+    /**
+     * Токен из заголовка Authorization. Для WebSocket handshake (/ws/**) браузер не может
+     * выставить заголовок, поэтому там токен принимается и из параметра ?token=
+     */
+    private String resolveToken(HttpServletRequest request) {
+        String authHeader = request.getHeader("Authorization");
+        if (authHeader != null && authHeader.startsWith("Bearer ")) {
+            return authHeader.substring(7);
+        }
+        if (request.getServletPath().startsWith(WS_PATH_PREFIX)) {
+            String token = request.getParameter("token");
+            return token != null && !token.isBlank() ? token : null;
+        }
+        return null;
+    }
+
+    /**
+     * Stateless режим: аутентификация только по проверенным claims, без запроса в Firestore.
+     * Возвращает false для старых токенов без claim "uid" - для них работает обычный путь.
+     */
+    private boolean authenticateStateless(Claims claims, HttpServletRequest request) {
+        User principal = jwtService.extractStatelessPrincipal(claims);
+        if (principal == null) {
+            return false;
+        }
+        
+        if (revocationRegistry.isRevoked(principal.getId(), principal.getCredentialsVersion())) {
+            log.warn("Revoked JWT token for user: {}", principal.getEmail());
+            return true;
+        }
+        
+        setAuthentication(principal, jwtService.extractAuthorities(claims), request);
+        log.debug("Successfully authenticated user from token claims: {}", principal.getEmail());
+        return true;
+    }
+
+    private void setAuthentication(UserDetails principal,
+                                   Collection<? extends GrantedAuthority> authorities,
+                                   HttpServletRequest request) {
+        UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
+                principal,
+                null,
+                authorities
+        );
+        authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+        SecurityContextHolder.getContext().setAuthentication(authToken);
+    }
 }
\ No newline at end of file
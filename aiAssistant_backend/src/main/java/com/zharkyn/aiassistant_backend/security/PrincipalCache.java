@@ -0,0 +1,82 @@
+package com.zharkyn.aiassistant_backend.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.zharkyn.aiassistant_backend.model.User;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Локальный кеш принципалов для JwtAuthenticationFilter.
+ * Хранит пользователя по email (subject токена), чтобы аутентификация на "теплом" пути
+ * не делала запросов в Firestore. Аватар в кеш не попадает.
+ * Stateless-путь (claim "uid") берет принципала из токена и кеш не использует.
+ */
+@Slf4j
+@Component
+public class PrincipalCache {
+
+    private final Cache<String, User> byEmail;
+
+    public PrincipalCache(@Value("${security.principal-cache.max-size:10000}") long maxSize,
+                          @Value("${security.principal-cache.ttl-seconds:300}") long ttlSeconds,
+                          MeterRegistry meterRegistry) {
+        this.byEmail = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, byEmail, "principal_cache", "key", "email");
+
+        log.info("Principal cache configured: maxSize={}, ttl={}s", maxSize, ttlSeconds);
+    }
+
+    public Optional<User> getByEmail(String email) {
+        return Optional.ofNullable(byEmail.getIfPresent(email));
+    }
+
+    /**
+     * Положить пользователя в кеш (копия без avatarBase64)
+     */
+    public User put(User user) {
+        User principal = toPrincipal(user);
+        if (principal.getEmail() != null) {
+            byEmail.put(principal.getEmail(), principal);
+        }
+        return principal;
+    }
+
+    /**
+     * Сбросить запись пользователя после изменения профиля или пароля
+     */
+    public void invalidate(User user) {
+        if (user.getEmail() != null) {
+            byEmail.invalidate(user.getEmail());
+        }
+        log.debug("Principal cache invalidated for user: {}", user.getEmail());
+    }
+
+    private static User toPrincipal(User user) {
+        return User.builder()
+                .id(user.getId())
+                .email(user.getEmail())
+                .password(user.getPassword())
+                .firstName(user.getFirstName())
+                .lastName(user.getLastName())
+                .phoneNumber(user.getPhoneNumber())
+                .bio(user.getBio())
+                .linkedInProfile(user.getLinkedInProfile())
+                .githubProfile(user.getGithubProfile())
+                .createdAt(user.getCreatedAt())
+                .updatedAt(user.getUpdatedAt())
+                .credentialsVersion(user.getCredentialsVersion())
+                .build();
+    }
+}
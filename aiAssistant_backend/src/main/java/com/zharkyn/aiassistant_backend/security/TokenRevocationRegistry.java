@@ -0,0 +1,50 @@
+package com.zharkyn.aiassistant_backend.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Небольшой in-memory список отзывов для stateless JWT.
+ * Для пользователя хранится минимальная допустимая версия учетных данных:
+ * токены с claim "cv" ниже нее отклоняются. Записи живут не дольше срока
+ * действия JWT - после этого старые токены истекают сами.
+ */
+@Slf4j
+@Component
+public class TokenRevocationRegistry {
+
+    private final Cache<String, Long> minCredentialsVersion;
+
+    public TokenRevocationRegistry(@Value("${jwt.expiration-ms}") long jwtExpiration,
+                                   @Value("${jwt.revocation.max-size:10000}") long maxSize) {
+        this.minCredentialsVersion = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(jwtExpiration))
+                .build();
+    }
+
+    /**
+     * Отозвать все токены пользователя с версией ниже указанной
+     */
+    public void revokeBefore(String userId, long credentialsVersion) {
+        minCredentialsVersion.asMap().merge(userId, credentialsVersion, Math::max);
+        log.info("Tokens revoked for user {} below credentials version {}", userId, credentialsVersion);
+    }
+
+    /**
+     * Отозвать все токены пользователя (например, при удалении аккаунта)
+     */
+    public void revokeAll(String userId) {
+        revokeBefore(userId, Long.MAX_VALUE);
+    }
+
+    public boolean isRevoked(String userId, long credentialsVersion) {
+        Long min = minCredentialsVersion.getIfPresent(userId);
+        return min != null && credentialsVersion < min;
+    }
+}
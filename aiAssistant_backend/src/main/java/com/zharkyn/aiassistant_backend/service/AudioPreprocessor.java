@@ -0,0 +1,306 @@
+package com.zharkyn.aiassistant_backend.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Подготовка записи ответа к STT на чистой Java (javax.sound, без нативных утилит).
+ *
+ * PCM (WAV): обрезка тишины в начале и конце по энергии 20 мс фреймов (простой VAD),
+ * сведение в моно и понижение частоты до 16 kHz (с этой частотой работает Whisper).
+ * Веб-клиент сам обрезает тишину и присылает сжатый Ogg/Opus (utils/answerAudio.js), а если браузер
+ * не умеет кодировать Opus - исходный webm. Сжатые форматы JDK декодировать не умеет -
+ * они передаются как есть, проверяется только минимальный размер.
+ *
+ * Почти пустые записи отклоняются до любого сетевого вызова (IllegalArgumentException).
+ * Чтение идет потоково в два прохода (энергии фреймов, затем запись диапазона),
+ * память не зависит от длины записи.
+ */
+@Slf4j
+@Service
+public class AudioPreprocessor {
+
+    private static final int FRAME_MS = 20;
+    private static final int IO_BUFFER_BYTES = 64 * 1024;
+    private static final int WAV_HEADER_BYTES = 44;
+    private static final byte[] OGG_MAGIC = {'O', 'g', 'g', 'S'};
+
+    @Value("${audio.preprocess.enabled:true}")
+    private boolean enabled;
+
+    @Value("${audio.target-sample-rate:16000}")
+    private int targetSampleRate;
+
+    // RMS фрейма (доля от полной шкалы), выше которого фрейм считается речью
+    @Value("${audio.vad.threshold:0.015}")
+    private double vadThreshold;
+
+    @Value("${audio.vad.min-speech-ms:300}")
+    private int minSpeechMs;
+
+    @Value("${audio.vad.padding-ms:200}")
+    private int paddingMs;
+
+    // Для форматов без декодера: меньше этого размера записи считаются пустыми (только заголовок контейнера)
+    @Value("${audio.min-compressed-bytes:2048}")
+    private long minCompressedBytes;
+
+    /**
+     * Подготовить запись. Если создан новый файл, derived = true - его нужно удалить после использования.
+     */
+    public PreparedAudio prepare(Path source) throws IOException {
+        AudioFormat format = pcmFormatOf(source);
+        if (!enabled) {
+            return new PreparedAudio(source, contentTypeOf(source, format), false);
+        }
+        if (format == null) {
+            long size = Files.size(source);
+            if (size < minCompressedBytes) {
+                throw new IllegalArgumentException("Recording is empty");
+            }
+            return new PreparedAudio(source, compressedTypeOf(source), false);
+        }
+
+        long started = System.nanoTime();
+        float[] frameRms = frameEnergies(source);
+        int firstVoiced = -1;
+        int lastVoiced = -1;
+        int voicedFrames = 0;
+        for (int i = 0; i < frameRms.length; i++) {
+            if (frameRms[i] >= vadThreshold) {
+                if (firstVoiced < 0) {
+                    firstVoiced = i;
+                }
+                lastVoiced = i;
+                voicedFrames++;
+            }
+        }
+        if (voicedFrames * FRAME_MS < minSpeechMs) {
+            log.info("Rejecting near-empty recording: {} ms of speech", voicedFrames * FRAME_MS);
+            throw new IllegalArgumentException("Recording is empty");
+        }
+
+        int paddingFrames = paddingMs / FRAME_MS;
+        int fromFrame = Math.max(0, firstVoiced - paddingFrames);
+        int toFrame = Math.min(frameRms.length, lastVoiced + 1 + paddingFrames);
+
+        Path target = Files.createTempFile("voice-answer-stt-", ".wav");
+        try {
+            writeTrimmedMono(source, target, fromFrame, toFrame);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(target);
+            throw e;
+        }
+        log.info("Audio preprocessed in {} ms: {} -> {} bytes, kept {}-{} of {} frames",
+                (System.nanoTime() - started) / 1_000_000, Files.size(source), Files.size(target),
+                fromFrame, toFrame, frameRms.length);
+        return new PreparedAudio(target, "audio/wav", true);
+    }
+
+    /**
+     * MIME-тип записи по ее содержимому (заголовку), а не по тому, что прислал клиент
+     */
+    public String contentTypeOf(Path source) throws IOException {
+        return contentTypeOf(source, pcmFormatOf(source));
+    }
+
+    private static String contentTypeOf(Path source, AudioFormat pcmFormat) throws IOException {
+        return pcmFormat != null ? "audio/wav" : compressedTypeOf(source);
+    }
+
+    /**
+     * Ogg (сигнатура "OggS") - запись, сжатая веб-клиентом; все остальное считается webm от MediaRecorder
+     */
+    private static String compressedTypeOf(Path source) throws IOException {
+        byte[] magic = new byte[OGG_MAGIC.length];
+        try (InputStream in = Files.newInputStream(source)) {
+            int read = in.readNBytes(magic, 0, magic.length);
+            return read == magic.length && Arrays.equals(magic, OGG_MAGIC) ? "audio/ogg" : "audio/webm";
+        }
+    }
+
+    /**
+     * Формат, если файл - несжатый PCM, который умеет читать javax.sound; иначе null
+     */
+    private AudioFormat pcmFormatOf(Path source) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(source))) {
+            AudioFormat format = AudioSystem.getAudioFileFormat(in).getFormat();
+            AudioFormat.Encoding encoding = format.getEncoding();
+            boolean pcm = AudioFormat.Encoding.PCM_SIGNED.equals(encoding)
+                    || AudioFormat.Encoding.PCM_UNSIGNED.equals(encoding);
+            return pcm ? format : null;
+        } catch (UnsupportedAudioFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Первый проход: RMS каждого 20 мс фрейма (моно-микс)
+     */
+    private float[] frameEnergies(Path source) throws IOException {
+        try (MonoSampleReader reader = MonoSampleReader.open(source)) {
+            int samplesPerFrame = Math.max(1, Math.round(reader.sampleRate * FRAME_MS / 1000f));
+            float[] energies = new float[64];
+            int frames = 0;
+            double sumSquares = 0;
+            int inFrame = 0;
+            float[] samples = new float[IO_BUFFER_BYTES / 2];
+            int read;
+            while ((read = reader.read(samples)) > 0) {
+                for (int i = 0; i < read; i++) {
+                    sumSquares += samples[i] * samples[i];
+                    if (++inFrame == samplesPerFrame) {
+                        if (frames == energies.length) {
+                            energies = Arrays.copyOf(energies, frames * 2);
+                        }
+                        energies[frames++] = (float) Math.sqrt(sumSquares / inFrame);
+                        sumSquares = 0;
+                        inFrame = 0;
+                    }
+                }
+            }
+            return Arrays.copyOf(energies, frames);
+        }
+    }
+
+    /**
+     * Второй проход: фреймы [fromFrame, toFrame) в моно 16-bit WAV с понижением частоты.
+     * Децимация усреднением по окну шага - заодно простой фильтр нижних частот.
+     */
+    private void writeTrimmedMono(Path source, Path target, int fromFrame, int toFrame) throws IOException {
+        try (MonoSampleReader reader = MonoSampleReader.open(source);
+             OutputStream out = new BufferedOutputStream(Files.newOutputStream(target), IO_BUFFER_BYTES)) {
+            int samplesPerFrame = Math.max(1, Math.round(reader.sampleRate * FRAME_MS / 1000f));
+            long fromSample = (long) fromFrame * samplesPerFrame;
+            long toSample = (long) toFrame * samplesPerFrame;
+            int outputRate = Math.min(targetSampleRate, Math.round(reader.sampleRate));
+            double step = reader.sampleRate / outputRate;
+
+            out.write(new byte[WAV_HEADER_BYTES]);
+            long dataBytes = 0;
+            double sum = 0;
+            int count = 0;
+            double nextBoundary = step;
+            long position = 0;
+            float[] samples = new float[IO_BUFFER_BYTES / 2];
+            int read;
+            while (position < toSample && (read = reader.read(samples)) > 0) {
+                for (int i = 0; i < read && position < toSample; i++, position++) {
+                    if (position < fromSample) {
+                        continue;
+                    }
+                    sum += samples[i];
+                    count++;
+                    if (position - fromSample + 1 >= nextBoundary) {
+                        int value = (int) Math.round(sum / count * Short.MAX_VALUE);
+                        value = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, value));
+                        out.write(value & 0xFF);
+                        out.write((value >> 8) & 0xFF);
+                        dataBytes += 2;
+                        sum = 0;
+                        count = 0;
+                        nextBoundary += step;
+                    }
+                }
+            }
+            // Заголовок дописывается поверх заглушки, когда известен размер данных
+            out.close();
+            writeWavHeader(target, outputRate, dataBytes);
+        }
+    }
+
+    private void writeWavHeader(Path target, int sampleRate, long dataBytes) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(target.toFile(), "rw")) {
+            file.seek(0);
+            file.writeBytes("RIFF");
+            file.writeInt(Integer.reverseBytes((int) (36 + dataBytes)));
+            file.writeBytes("WAVE");
+            file.writeBytes("fmt ");
+            file.writeInt(Integer.reverseBytes(16));
+            file.writeShort(Short.reverseBytes((short) 1));
+            file.writeShort(Short.reverseBytes((short) 1));
+            file.writeInt(Integer.reverseBytes(sampleRate));
+            file.writeInt(Integer.reverseBytes(sampleRate * 2));
+            file.writeShort(Short.reverseBytes((short) 2));
+            file.writeShort(Short.reverseBytes((short) 16));
+            file.writeBytes("data");
+            file.writeInt(Integer.reverseBytes((int) dataBytes));
+        }
+    }
+
+    /**
+     * Результат подготовки; derived = файл создан препроцессором и удаляется вызывающим кодом
+     */
+    public record PreparedAudio(Path path, String contentType, boolean derived) {
+    }
+
+    /**
+     * Потоковое чтение PCM как моно-сэмплов в диапазоне [-1, 1]
+     */
+    private static final class MonoSampleReader implements AutoCloseable {
+
+        private final AudioInputStream stream;
+        private final float sampleRate;
+        private final int channels;
+        private final byte[] buffer;
+
+        private MonoSampleReader(AudioInputStream stream) {
+            this.stream = stream;
+            this.sampleRate = stream.getFormat().getSampleRate();
+            this.channels = stream.getFormat().getChannels();
+            this.buffer = new byte[IO_BUFFER_BYTES - IO_BUFFER_BYTES % (2 * channels)];
+        }
+
+        static MonoSampleReader open(Path source) throws IOException {
+            try {
+                AudioInputStream original = AudioSystem.getAudioInputStream(
+                        new BufferedInputStream(Files.newInputStream(source)));
+                AudioFormat format = original.getFormat();
+                AudioFormat pcm16 = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, format.getSampleRate(), 16,
+                        format.getChannels(), format.getChannels() * 2, format.getSampleRate(), false);
+                return new MonoSampleReader(AudioSystem.getAudioInputStream(pcm16, original));
+            } catch (UnsupportedAudioFileException e) {
+                throw new IOException("Unsupported audio format", e);
+            }
+        }
+
+        /**
+         * Прочитать до samples.length моно-сэмплов; 0 или меньше - конец потока
+         */
+        int read(float[] samples) throws IOException {
+            int maxBytes = Math.min(buffer.length, samples.length * 2 * channels);
+            int bytes = stream.readNBytes(buffer, 0, maxBytes);
+            int frameBytes = 2 * channels;
+            int frames = bytes / frameBytes;
+            for (int f = 0; f < frames; f++) {
+                int sum = 0;
+                for (int c = 0; c < channels; c++) {
+                    int offset = f * frameBytes + c * 2;
+                    sum += (short) ((buffer[offset] & 0xFF) | (buffer[offset + 1] << 8));
+                }
+                samples[f] = sum / (float) channels / Short.MAX_VALUE;
+            }
+            return frames;
+        }
+
+        @Override
+        public void close() throws IOException {
+            stream.close();
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package com.zharkyn.aiassistant_backend.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Фоновые задачи внутри процесса (архивация аудио, сохранение сообщений и т.п.):
+ * ограниченная очередь, пул воркеров, повторы с экспоненциальной задержкой;
+ * задачи, исчерпавшие попытки или отклоненные при остановке, уходят в dead-letter
+ * (лог ошибки и счетчик background.jobs.dead_letter{job}), а их future завершается ошибкой.
+ *
+ * Задачи должны быть идемпотентны - при повторе они выполняются заново целиком.
+ * При переполнении очереди первая попытка выполняется в вызывающем потоке (backpressure, а не потеря данных);
+ * повтор при переполнении откладывается еще раз и никогда не выполняется в потоке планировщика повторов.
+ *
+ * Долгие необязательные задачи (оценка ответов, сводка истории через Gemini) идут через
+ * submitBestEffort в отдельный пул: они не занимают воркеров архивации, а при переполнении
+ * отбрасываются, а не выполняются в потоке запроса пользователя.
+ *
+ * Метрики: background.jobs.queue.depth, background.jobs.best_effort.queue.depth,
+ * background.jobs.latency{job,outcome} (от постановки до завершения),
+ * background.jobs.retries{job}, background.jobs.dropped{job}, background.jobs.dead_letter{job}.
+ */
+@Slf4j
+@Service
+public class BackgroundJobService {
+
+    private final ThreadPoolExecutor workers;
+    private final ThreadPoolExecutor bestEffortWorkers;
+    private final ScheduledExecutorService retryScheduler;
+    private final MeterRegistry meterRegistry;
+    private final int maxAttempts;
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+    private final Set<Attempt<?>> pendingRetries = ConcurrentHashMap.newKeySet();
+
+    public BackgroundJobService(MeterRegistry meterRegistry,
+                                @Value("${background.jobs.workers:4}") int workerCount,
+                                @Value("${background.jobs.queue-capacity:1000}") int queueCapacity,
+                                @Value("${background.jobs.max-attempts:4}") int maxAttempts,
+                                @Value("${background.jobs.initial-backoff-ms:500}") long initialBackoffMs,
+                                @Value("${background.jobs.max-backoff-ms:30000}") long maxBackoffMs,
+                                @Value("${background.jobs.best-effort.workers:2}") int bestEffortWorkerCount,
+                                @Value("${background.jobs.best-effort.queue-capacity:100}") int bestEffortQueueCapacity) {
+        this.meterRegistry = meterRegistry;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.initialBackoffMs = initialBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threadFactory("bg-job-"), this::rejected);
+        this.bestEffortWorkers = new ThreadPoolExecutor(bestEffortWorkerCount, bestEffortWorkerCount, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(bestEffortQueueCapacity), threadFactory("bg-best-effort-"), this::rejected);
+        this.retryScheduler = Executors.newSingleThreadScheduledExecutor(threadFactory("bg-job-retry-"));
+
+        Gauge.builder("background.jobs.queue.depth", workers, executor -> executor.getQueue().size())
+                .register(meterRegistry);
+        Gauge.builder("background.jobs.best_effort.queue.depth", bestEffortWorkers, executor -> executor.getQueue().size())
+                .register(meterRegistry);
+        log.info("Background jobs: workers={}, queue={}, bestEffortWorkers={}, bestEffortQueue={}, maxAttempts={}",
+                workerCount, queueCapacity, bestEffortWorkerCount, bestEffortQueueCapacity, this.maxAttempts);
+    }
+
+    /**
+     * Поставить задачу в очередь. Future завершается результатом первой успешной попытки
+     * или последней ошибкой, если все попытки исчерпаны или сервис остановлен (задача уходит в dead-letter).
+     */
+    public <T> CompletableFuture<T> submit(String jobName, Callable<T> job) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        workers.execute(new Attempt<>(workers, jobName, job, 1, System.nanoTime(), result));
+        return result;
+    }
+
+    /**
+     * Поставить необязательную задачу в отдельный пул. Если его очередь заполнена, задача
+     * отбрасывается (future завершается RejectedExecutionException) - вызывающий поток не блокируется.
+     */
+    public <T> CompletableFuture<T> submitBestEffort(String jobName, Callable<T> job) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        bestEffortWorkers.execute(new Attempt<>(bestEffortWorkers, jobName, job, 1, System.nanoTime(), result));
+        return result;
+    }
+
+    /**
+     * Обработчик отказа пула: ни одна задача не теряется молча - future всегда завершается
+     */
+    private void rejected(Runnable task, ThreadPoolExecutor pool) {
+        if (!(task instanceof Attempt<?> attempt)) {
+            throw new RejectedExecutionException("Unexpected task for background jobs: " + task);
+        }
+        if (pool.isShutdown()) {
+            attempt.deadLetter("rejected", new RejectedExecutionException("Background jobs are shutting down"));
+        } else if (pool == bestEffortWorkers) {
+            log.warn("Best-effort job '{}' dropped: queue is full", attempt.jobName);
+            Counter.builder("background.jobs.dropped").tag("job", attempt.jobName).register(meterRegistry).increment();
+            recordLatency(attempt.jobName, "dropped", attempt.enqueuedAt);
+            attempt.result.completeExceptionally(new RejectedExecutionException("Best-effort queue is full"));
+        } else if (attempt.number > 1) {
+            // Повтор пришел из единственного потока планировщика - выполнять его здесь значит остановить остальные повторы
+            attempt.scheduleRetry(attempt.number);
+        } else {
+            // Очередь заполнена - backpressure: первая попытка выполняется в потоке, который ставит задачу
+            attempt.run();
+        }
+    }
+
+    private long backoffMs(int attempt) {
+        long delay = initialBackoffMs << Math.min(attempt - 1, 20);
+        return Math.min(delay, maxBackoffMs);
+    }
+
+    private void recordLatency(String jobName, String outcome, long enqueuedAt) {
+        Timer.builder("background.jobs.latency")
+                .tag("job", jobName)
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .record(System.nanoTime() - enqueuedAt, TimeUnit.NANOSECONDS);
+    }
+
+    private static ThreadFactory threadFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Дать очереди дообработаться при остановке приложения; отложенные повторы не ждем -
+     * они и все, что не успело выполниться, уходят в dead-letter с завершением future
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        retryScheduler.shutdownNow();
+        for (Attempt<?> attempt : pendingRetries) {
+            if (pendingRetries.remove(attempt)) {
+                attempt.deadLetter("rejected", new RejectedExecutionException("Background jobs stopped before retry"));
+            }
+        }
+        // Необязательные задачи не ждем - они долгие, а при следующем запросе отчета все досчитается
+        deadLetterUnstarted(bestEffortWorkers.shutdownNow());
+        workers.shutdown();
+        if (!workers.awaitTermination(30, TimeUnit.SECONDS)) {
+            log.warn("Background jobs did not finish in time, {} left in queue", workers.getQueue().size());
+            deadLetterUnstarted(workers.shutdownNow());
+        }
+    }
+
+    private void deadLetterUnstarted(List<Runnable> unstarted) {
+        for (Runnable task : unstarted) {
+            if (task instanceof Attempt<?> attempt) {
+                attempt.deadLetter("rejected", new RejectedExecutionException("Background jobs stopped before start"));
+            }
+        }
+    }
+
+    /**
+     * Одна попытка задачи; повтор - новая попытка с тем же future
+     */
+    private final class Attempt<T> implements Runnable {
+
+        private final ThreadPoolExecutor pool;
+        private final String jobName;
+        private final Callable<T> job;
+        private final int number;
+        private final long enqueuedAt;
+        private final CompletableFuture<T> result;
+
+        private Attempt(ThreadPoolExecutor pool, String jobName, Callable<T> job, int number,
+                        long enqueuedAt, CompletableFuture<T> result) {
+            this.pool = pool;
+            this.jobName = jobName;
+            this.job = job;
+            this.number = number;
+            this.enqueuedAt = enqueuedAt;
+            this.result = result;
+        }
+
+        @Override
+        public void run() {
+            try {
+                T value = job.call();
+                recordLatency(jobName, "success", enqueuedAt);
+                result.complete(value);
+            } catch (Exception e) {
+                if (number >= maxAttempts) {
+                    deadLetter("failed", e);
+                    return;
+                }
+                log.warn("Background job '{}' failed (attempt {}/{}), retrying: {}",
+                        jobName, number, maxAttempts, e.getMessage());
+                Counter.builder("background.jobs.retries").tag("job", jobName).register(meterRegistry).increment();
+                scheduleRetry(number + 1);
+            }
+        }
+
+        /**
+         * Отложить попытку с номером nextNumber; после остановки планировщика задача уходит в dead-letter
+         */
+        private void scheduleRetry(int nextNumber) {
+            Attempt<T> next = new Attempt<>(pool, jobName, job, nextNumber, enqueuedAt, result);
+            pendingRetries.add(next);
+            try {
+                retryScheduler.schedule(() -> {
+                    if (pendingRetries.remove(next)) {
+                        pool.execute(next);
+                    }
+                }, backoffMs(number), TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException stopped) {
+                if (pendingRetries.remove(next)) {
+                    next.deadLetter("rejected", stopped);
+                }
+            }
+        }
+
+        private void deadLetter(String outcome, Exception error) {
+            log.error("Background job '{}' {} after {} attempt(s), moved to dead-letter", jobName, outcome, number, error);
+            recordLatency(jobName, outcome, enqueuedAt);
+            Counter.builder("background.jobs.dead_letter").tag("job", jobName).register(meterRegistry).increment();
+            result.completeExceptionally(error);
+        }
+    }
+}
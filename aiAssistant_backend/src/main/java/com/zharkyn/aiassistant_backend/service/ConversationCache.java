@@ -0,0 +1,101 @@
+package com.zharkyn.aiassistant_backend.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.zharkyn.aiassistant_backend.model.ChatMessage;
+import com.zharkyn.aiassistant_backend.model.InterviewSession;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * История чата активных интервью в памяти: каждый ход дописывает сохраненные сообщения,
+ * поэтому следующий ход не перечитывает chat_messages целиком.
+ *
+ * Запись считается актуальной, только если номер ее последнего вопроса совпадает
+ * с currentQuestionNumber сессии из Firestore. Если ход сделан на другом узле или после
+ * перезапуска, номера не совпадут и история будет перечитана. Записи вытесняются
+ * по размеру, по простою и при завершении интервью.
+ */
+@Slf4j
+@Service
+public class ConversationCache {
+
+    private final Cache<String, Conversation> conversations;
+
+    public ConversationCache(@Value("${interview.conversation-cache.max-sessions:2000}") long maxSessions,
+                             @Value("${interview.conversation-cache.idle-minutes:30}") long idleMinutes,
+                             MeterRegistry meterRegistry) {
+        this.conversations = Caffeine.newBuilder()
+                .maximumSize(maxSessions)
+                .expireAfterAccess(Duration.ofMinutes(idleMinutes))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, conversations, "conversation_cache");
+        log.info("Conversation cache configured: maxSessions={}, idle={}m", maxSessions, idleMinutes);
+    }
+
+    /**
+     * История сессии, если она в кеше и соответствует текущему вопросу сессии
+     */
+    public Optional<List<ChatMessage>> get(InterviewSession session) {
+        Conversation conversation = conversations.getIfPresent(session.getId());
+        if (conversation == null || !Objects.equals(conversation.questionNumber(), session.getCurrentQuestionNumber())) {
+            return Optional.empty();
+        }
+        return Optional.of(conversation.messages());
+    }
+
+    /**
+     * Положить историю, прочитанную из Firestore (или только что созданную)
+     */
+    public void put(String sessionId, List<ChatMessage> history) {
+        conversations.put(sessionId, Conversation.of(history));
+    }
+
+    /**
+     * Дописать сохраненное сообщение; если сессии нет в кеше, ничего не делает
+     * (неполную историю не кешируем)
+     */
+    public void append(String sessionId, ChatMessage message) {
+        conversations.asMap().computeIfPresent(sessionId, (id, conversation) -> {
+            List<ChatMessage> messages = new ArrayList<>(conversation.messages().size() + 1);
+            for (ChatMessage existing : conversation.messages()) {
+                if (message.getId() == null || !message.getId().equals(existing.getId())) {
+                    messages.add(existing);
+                }
+            }
+            messages.add(message);
+            return Conversation.of(messages);
+        });
+    }
+
+    public void evict(String sessionId) {
+        conversations.invalidate(sessionId);
+    }
+
+    /**
+     * Неизменяемый снимок истории; questionNumber - номер последнего вопроса AI
+     */
+    private record Conversation(List<ChatMessage> messages, Integer questionNumber) {
+
+        static Conversation of(List<ChatMessage> messages) {
+            Integer questionNumber = null;
+            for (int i = messages.size() - 1; i >= 0 && questionNumber == null; i--) {
+                if (messages.get(i).getRole() == ChatMessage.MessageRole.MODEL) {
+                    questionNumber = messages.get(i).getQuestionNumber();
+                }
+            }
+            return new Conversation(Collections.unmodifiableList(new ArrayList<>(messages)), questionNumber);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.zharkyn.aiassistant_backend.service;
+
+import com.zharkyn.aiassistant_backend.model.ChatMessage;
+import com.zharkyn.aiassistant_backend.model.InterviewSession;
+import com.zharkyn.aiassistant_backend.repository.InterviewSessionRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Окно контекста для generateNextResponse: вместо всей истории (до 40 сообщений к 20-му вопросу)
+ * в Gemini уходят последние K ходов дословно и сводка более ранней части диалога.
+ *
+ * Пока история укладывается в бюджет токенов, она отправляется целиком. Сводка хранится
+ * в InterviewSession (historySummary + summarizedMessageCount) и дополняется инкрементально
+ * фоновой задачей - только сообщениями, вышедшими из окна с прошлого раза. Пока новая сводка
+ * не готова, эти сообщения отправляются дословно, так что контекст не теряется.
+ */
+@Slf4j
+@Service
+public class ConversationContextManager {
+
+    private final GeminiService geminiService;
+    private final InterviewSessionRepository sessionRepository;
+    private final BackgroundJobService backgroundJobs;
+
+    // Сколько последних ходов (вопрос + ответ) отправлять дословно
+    @Value("${interview.context.recent-turns:4}")
+    private int recentTurns;
+
+    // Оценка ~4 символа на токен; история меньше бюджета отправляется без сводки
+    @Value("${interview.context.token-budget:3000}")
+    private int tokenBudget;
+
+    public ConversationContextManager(GeminiService geminiService,
+                                      InterviewSessionRepository sessionRepository,
+                                      BackgroundJobService backgroundJobs) {
+        this.geminiService = geminiService;
+        this.sessionRepository = sessionRepository;
+        this.backgroundJobs = backgroundJobs;
+    }
+
+    /**
+     * Окно для очередного хода по полной истории сессии
+     */
+    public ConversationWindow window(InterviewSession session, List<ChatMessage> history) {
+        if (estimateTokens(history) <= tokenBudget) {
+            return new ConversationWindow(null, history, 0, 0);
+        }
+
+        int keepFrom = Math.max(0, history.size() - recentTurns * 2);
+        // Окно начинается с вопроса, а не с ответа на него
+        if (keepFrom > 0 && history.get(keepFrom).getRole() == ChatMessage.MessageRole.USER) {
+            keepFrom--;
+        }
+        int summarized = session.getSummarizedMessageCount() != null && session.getHistorySummary() != null
+                ? Math.min(session.getSummarizedMessageCount(), keepFrom)
+                : 0;
+        String summary = summarized > 0 ? session.getHistorySummary() : null;
+
+        return new ConversationWindow(summary, history.subList(summarized, history.size()), summarized, keepFrom);
+    }
+
+    /**
+     * Если из окна вышли новые сообщения, дополнить сводку в фоне (не задерживая ответ пользователю)
+     */
+    public void refreshSummaryInBackground(InterviewSession session, List<ChatMessage> history, ConversationWindow window) {
+        if (window.summarizeUpTo() <= window.summarizedCount()) {
+            return;
+        }
+        List<ChatMessage> newlyAged = List.copyOf(history.subList(window.summarizedCount(), window.summarizeUpTo()));
+        backgroundJobs.submitBestEffort("interview.summarize", () -> {
+            String summary = geminiService.summarizeConversation(window.summary(), newlyAged).block();
+            if (summary == null || summary.isBlank()) {
+                throw new RuntimeException("Empty summary from Gemini");
+            }
+            boolean written = sessionRepository.updateHistorySummaryAsync(
+                    session.getId(), summary.trim(), window.summarizeUpTo()).get();
+            log.info("History summary for session {} now covers {} messages (written: {})",
+                    session.getId(), window.summarizeUpTo(), written);
+            return written;
+        });
+    }
+
+    private int estimateTokens(List<ChatMessage> history) {
+        long chars = 0;
+        for (ChatMessage message : history) {
+            chars += message.getContent() != null ? message.getContent().length() : 0;
+        }
+        return (int) (chars / 4);
+    }
+
+    /**
+     * summary + messages - то, что уходит в Gemini; summarizedCount - сколько первых сообщений
+     * покрывает summary; summarizeUpTo - до какого сообщения сводку стоит дополнить
+     */
+    public record ConversationWindow(String summary,
+                                     List<ChatMessage> messages,
+                                     int summarizedCount,
+                                     int summarizeUpTo) {
+    }
+}
@@ -0,0 +1,202 @@
+package com.zharkyn.aiassistant_backend.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.zharkyn.aiassistant_backend.dto.AnalyticsDtos;
+import com.zharkyn.aiassistant_backend.model.ChatMessage;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Разбор оценок ответов от Gemini: JSON по схеме (один проход JsonParser, без промежуточного дерева)
+ * и старый текстовый формат. Оценка без балла 0-10 или без feedback считается неразобранной -
+ * подставлять "оценку по умолчанию" здесь нельзя, иначе она сохранится как настоящая.
+ */
+@Slf4j
+final class EvaluationParser {
+
+    static final int MIN_SCORE = 0;
+    static final int MAX_SCORE = 10;
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    /**
+     * Одна оценка. Если ответ не JSON, разбирается текстовый формат;
+     * если не удалось ни то ни другое - RuntimeException (ответ остается неоцененным)
+     */
+    AnalyticsDtos.AnswerEvaluation parseEvaluation(String aiResponse, ChatMessage.QuestionType questionType) {
+        if (aiResponse == null || aiResponse.isBlank()) {
+            throw new RuntimeException("Empty AI evaluation");
+        }
+        int objectStart = aiResponse.indexOf('{');
+        if (objectStart >= 0) {
+            try (JsonParser parser = jsonFactory.createParser(aiResponse.substring(objectStart))) {
+                parser.nextToken();
+                ParsedEvaluation parsed = readEvaluation(parser);
+                if (parsed.isValid()) {
+                    return parsed.toAnswerEvaluation(questionType);
+                }
+            } catch (IOException e) {
+                log.debug("AI evaluation is not valid JSON, trying text format: {}", e.getMessage());
+            }
+        }
+        ParsedEvaluation parsed = parseText(aiResponse);
+        if (!parsed.isValid()) {
+            throw new RuntimeException("Could not parse AI evaluation");
+        }
+        return parsed.toAnswerEvaluation(questionType);
+    }
+
+    /**
+     * JSON-массив оценок с id за один проход: некорректные элементы и неизвестные id пропускаются
+     * (для них будет отдельный запрос), при обрыве JSON остаются уже разобранные элементы.
+     * questionTypes - тип вопроса по id элемента.
+     */
+    Map<Integer, AnalyticsDtos.AnswerEvaluation> parseBatch(String json,
+                                                            Map<Integer, ChatMessage.QuestionType> questionTypes) {
+        Map<Integer, AnalyticsDtos.AnswerEvaluation> parsed = new HashMap<>();
+        if (json == null) {
+            return parsed;
+        }
+
+        try (JsonParser parser = jsonFactory.createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                log.warn("Batch evaluation is not a JSON array");
+                return parsed;
+            }
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY && token != null) {
+                if (token != JsonToken.START_OBJECT) {
+                    parser.skipChildren();
+                    continue;
+                }
+                ParsedEvaluation item = readEvaluation(parser);
+                ChatMessage.QuestionType questionType = item.id != null ? questionTypes.get(item.id) : null;
+                if (questionType != null && item.isValid()) {
+                    parsed.putIfAbsent(item.id, item.toAnswerEvaluation(questionType));
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Batch evaluation JSON is malformed after {} items: {}", parsed.size(), e.getMessage());
+        }
+        return parsed;
+    }
+
+    /**
+     * Прочитать объект оценки; парсер стоит на START_OBJECT, по выходу - на его END_OBJECT
+     */
+    private ParsedEvaluation readEvaluation(JsonParser parser) throws IOException {
+        ParsedEvaluation result = new ParsedEvaluation();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "id" -> result.id = value == JsonToken.VALUE_NUMBER_INT ? parser.getIntValue() : null;
+                case "score" -> result.score = readScore(parser, value);
+                case "feedback" -> result.feedback = value == JsonToken.VALUE_STRING ? parser.getText().trim() : null;
+                case "strengths" -> readStrings(parser, value, result.strengths);
+                case "improvements" -> readStrings(parser, value, result.improvements);
+                default -> { }
+            }
+            parser.skipChildren();
+        }
+        return result;
+    }
+
+    private Integer readScore(JsonParser parser, JsonToken value) throws IOException {
+        return switch (value) {
+            case VALUE_NUMBER_INT -> parser.getIntValue();
+            case VALUE_NUMBER_FLOAT -> (int) Math.round(parser.getDoubleValue());
+            case VALUE_STRING -> parseScore(parser.getText());
+            default -> null;
+        };
+    }
+
+    private void readStrings(JsonParser parser, JsonToken value, List<String> target) throws IOException {
+        if (value != JsonToken.START_ARRAY) {
+            return;
+        }
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY && token != null) {
+            if (token == JsonToken.VALUE_STRING && !parser.getText().isBlank()) {
+                target.add(parser.getText().trim());
+            }
+            parser.skipChildren();
+        }
+    }
+
+    /**
+     * Старый текстовый формат (Score: X/10, Feedback:, списки Strengths:/Improvements:) - за один проход по строкам
+     */
+    private ParsedEvaluation parseText(String text) {
+        ParsedEvaluation result = new ParsedEvaluation();
+        List<String> currentList = null;
+
+        for (String rawLine : (Iterable<String>) text.lines()::iterator) {
+            String line = rawLine.trim();
+            if (line.startsWith("Score:")) {
+                if (result.score == null) {
+                    result.score = parseScore(line.substring("Score:".length()));
+                }
+                currentList = null;
+            } else if (line.startsWith("Feedback:")) {
+                if (result.feedback == null) {
+                    result.feedback = line.substring("Feedback:".length()).trim();
+                }
+                currentList = null;
+            } else if (line.startsWith("Strengths:")) {
+                currentList = result.strengths;
+            } else if (line.startsWith("Improvements:")) {
+                currentList = result.improvements;
+            } else if (currentList != null && line.startsWith("-")) {
+                String item = line.substring(1).trim();
+                if (!item.isEmpty()) {
+                    currentList.add(item);
+                }
+            } else if (!line.isEmpty()) {
+                currentList = null;
+            }
+        }
+        return result;
+    }
+
+    private static Integer parseScore(String text) {
+        try {
+            return Integer.parseInt(text.replace("/10", "").trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Поля оценки; проверка диапазона до превращения в AnswerEvaluation
+     */
+    private static final class ParsedEvaluation {
+        private Integer id;
+        private Integer score;
+        private String feedback;
+        private final List<String> strengths = new ArrayList<>();
+        private final List<String> improvements = new ArrayList<>();
+
+        private boolean isValid() {
+            return score != null && score >= MIN_SCORE && score <= MAX_SCORE
+                    && feedback != null && !feedback.isBlank();
+        }
+
+        private AnalyticsDtos.AnswerEvaluation toAnswerEvaluation(ChatMessage.QuestionType questionType) {
+            return AnalyticsDtos.AnswerEvaluation.builder()
+                .score(score)
+                .feedback(feedback)
+                .strengths(strengths)
+                .improvements(improvements)
+                .questionType(questionType.name())
+                .build();
+        }
+    }
+}
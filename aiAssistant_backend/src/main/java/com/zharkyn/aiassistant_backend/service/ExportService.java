@@ -24,8 +24,11 @@ import com.itextpdf.text.pdf.PdfWriter;
 
 import java.io.ByteArrayOutputStream;
 import java.io.PrintWriter;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 
 /**
@@ -54,18 +57,13 @@ public class ExportService {
         // Заголовки
         writer.println("Interview ID,Position,Company,Date,Status,Overall Score,Questions Answered");
         
-        // Получаем Firestore
-        com.google.cloud.firestore.Firestore dbFirestore = 
-            com.google.firebase.cloud.FirestoreClient.getFirestore();
+        // Сессии запрашиваем сразу все, параллельно
+        Map<String, CompletableFuture<InterviewSession>> sessions = prefetchSessions(interviewIds);
         
         // Данные
         for (String interviewId : interviewIds) {
             try {
-                InterviewSession session = dbFirestore.collection("interview_sessions")
-                    .document(interviewId)
-                    .get()
-                    .get()
-                    .toObject(InterviewSession.class);
+                InterviewSession session = sessions.get(interviewId).get();
                 
                 if (session == null) continue;
                 
@@ -101,24 +99,17 @@ public class ExportService {
         
         log.info("Exporting interview {} to PDF", interviewId);
         
-        // Получаем Firestore
-        com.google.cloud.firestore.Firestore dbFirestore = 
-            com.google.firebase.cloud.FirestoreClient.getFirestore();
+        // Данные интервью читаются, пока генерируется отчет
+        CompletableFuture<InterviewSession> sessionFuture = sessionRepository.findByIdAsync(interviewId);
         
-        // Получаем данные интервью
-        InterviewSession session = dbFirestore.collection("interview_sessions")
-            .document(interviewId)
-            .get()
-            .get()
-            .toObject(InterviewSession.class);
+        // Генерируем отчет
+        AnalyticsDtos.InterviewReport report = analyticsService.generateInterviewReport(interviewId);
         
+        InterviewSession session = sessionFuture.get();
         if (session == null) {
             throw new RuntimeException("Interview not found: " + interviewId);
         }
         
-        // Генерируем отчет
-        AnalyticsDtos.InterviewReport report = analyticsService.generateInterviewReport(interviewId);
-        
         // Создаем PDF
         ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
         
@@ -219,9 +210,7 @@ public class ExportService {
         
         log.info("Generating PDF HTML for {} interviews", interviewIds.size());
         
-        // Получаем Firestore
-        com.google.cloud.firestore.Firestore dbFirestore = 
-            com.google.firebase.cloud.FirestoreClient.getFirestore();
+        Map<String, CompletableFuture<InterviewSession>> sessions = prefetchSessions(interviewIds);
         
         StringBuilder html = new StringBuilder();
         html.append("<!DOCTYPE html><html><head>");
@@ -245,11 +234,7 @@ public class ExportService {
         
         for (String interviewId : interviewIds) {
             try {
-                InterviewSession session = dbFirestore.collection("interview_sessions")
-                    .document(interviewId)
-                    .get()
-                    .get()
-                    .toObject(InterviewSession.class);
+                InterviewSession session = sessions.get(interviewId).get();
                 
                 if (session == null) continue;
                 
@@ -299,24 +284,7 @@ public class ExportService {
     public void saveDraft(String interviewId) 
             throws ExecutionException, InterruptedException {
         
-        User currentUser = getCurrentUser();
-        
-        com.google.cloud.firestore.Firestore dbFirestore = 
-            com.google.firebase.cloud.FirestoreClient.getFirestore();
-        
-        InterviewSession session = dbFirestore.collection("interview_sessions")
-            .document(interviewId)
-            .get()
-            .get()
-            .toObject(InterviewSession.class);
-        
-        if (session == null) {
-            throw new RuntimeException("Interview not found");
-        }
-        
-        if (!session.getUserId().equals(currentUser.getId())) {
-            throw new RuntimeException("Unauthorized access to interview");
-        }
+        InterviewSession session = getOwnedSession(interviewId);
         
         // Помечаем как черновик (можно добавить отдельный статус DRAFT)
         session.setStatus(InterviewSession.InterviewStatus.IN_PROGRESS);
@@ -331,24 +299,7 @@ public class ExportService {
     public InterviewSession resumeDraft(String interviewId) 
             throws ExecutionException, InterruptedException {
         
-        User currentUser = getCurrentUser();
-        
-        com.google.cloud.firestore.Firestore dbFirestore = 
-            com.google.firebase.cloud.FirestoreClient.getFirestore();
-        
-        InterviewSession session = dbFirestore.collection("interview_sessions")
-            .document(interviewId)
-            .get()
-            .get()
-            .toObject(InterviewSession.class);
-        
-        if (session == null) {
-            throw new RuntimeException("Interview not found");
-        }
-        
-        if (!session.getUserId().equals(currentUser.getId())) {
-            throw new RuntimeException("Unauthorized access to interview");
-        }
+        InterviewSession session = getOwnedSession(interviewId);
         
         if (session.getStatus() != InterviewSession.InterviewStatus.IN_PROGRESS) {
             throw new RuntimeException("Interview is not in progress");
@@ -364,24 +315,7 @@ public class ExportService {
     public void pauseInterview(String interviewId) 
             throws ExecutionException, InterruptedException {
         
-        User currentUser = getCurrentUser();
-        
-        com.google.cloud.firestore.Firestore dbFirestore = 
-            com.google.firebase.cloud.FirestoreClient.getFirestore();
-        
-        InterviewSession session = dbFirestore.collection("interview_sessions")
-            .document(interviewId)
-            .get()
-            .get()
-            .toObject(InterviewSession.class);
-        
-        if (session == null) {
-            throw new RuntimeException("Interview not found");
-        }
-        
-        if (!session.getUserId().equals(currentUser.getId())) {
-            throw new RuntimeException("Unauthorized access to interview");
-        }
+        InterviewSession session = getOwnedSession(interviewId);
         
         // Можно добавить поле lastActivity для отслеживания паузы
         // session.setUpdatedAt(Timestamp.now()); // Убрано, т.к. поля нет в модели
@@ -392,10 +326,37 @@ public class ExportService {
 
     // === Helper methods ===
 
-    private User getCurrentUser() throws ExecutionException, InterruptedException {
+    /**
+     * Сессия текущего пользователя: пользователь и сессия читаются параллельно
+     */
+    private InterviewSession getOwnedSession(String interviewId) 
+            throws ExecutionException, InterruptedException {
+        
         String userEmail = SecurityContextHolder.getContext().getAuthentication().getName();
-        return userRepository.findByEmail(userEmail)
+        CompletableFuture<Optional<User>> userFuture = userRepository.findByEmailAsync(userEmail);
+        CompletableFuture<InterviewSession> sessionFuture = sessionRepository.findByIdAsync(interviewId);
+        CompletableFuture.allOf(userFuture, sessionFuture).get();
+        
+        User currentUser = userFuture.join()
                 .orElseThrow(() -> new RuntimeException("User not found: " + userEmail));
+        InterviewSession session = sessionFuture.join();
+        
+        if (session == null) {
+            throw new RuntimeException("Interview not found");
+        }
+        
+        if (!session.getUserId().equals(currentUser.getId())) {
+            throw new RuntimeException("Unauthorized access to interview");
+        }
+        return session;
+    }
+
+    private Map<String, CompletableFuture<InterviewSession>> prefetchSessions(List<String> interviewIds) {
+        Map<String, CompletableFuture<InterviewSession>> sessions = new LinkedHashMap<>();
+        for (String interviewId : interviewIds) {
+            sessions.computeIfAbsent(interviewId, sessionRepository::findByIdAsync);
+        }
+        return sessions;
     }
 
     private String escapeCsv(String value) {
@@ -0,0 +1,68 @@
+package com.zharkyn.aiassistant_backend.service;
+
+import com.zharkyn.aiassistant_backend.dto.GeminiDtos;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * GeminiContextCache через cachedContents API. Модель и базовый URL берутся из gemini.api.url
+ * (.../v1beta/models/{model}:generateContent) - кеш должен создаваться для той же модели,
+ * которая потом вызывается с cachedContent.
+ */
+@Slf4j
+@Service
+public class GeminiCachedContentClient implements GeminiContextCache {
+
+    private final WebClient webClient;
+    private final String model;
+    private final String apiKey;
+
+    public GeminiCachedContentClient(@Qualifier("geminiWebClient") WebClient geminiWebClient,
+                                     @Value("${gemini.api.url}") String apiUrl,
+                                     @Value("${gemini.api.key}") String apiKey) {
+        int modelsAt = apiUrl.indexOf("/models/");
+        int methodAt = apiUrl.lastIndexOf(':');
+        if (modelsAt < 0 || methodAt < modelsAt) {
+            throw new IllegalStateException("Unexpected gemini.api.url format: " + apiUrl);
+        }
+        this.webClient = geminiWebClient.mutate().baseUrl(apiUrl.substring(0, modelsAt)).build();
+        this.model = apiUrl.substring(modelsAt + 1, methodAt);
+        this.apiKey = apiKey;
+    }
+
+    @Override
+    public Mono<String> create(GeminiDtos.Content systemInstruction, Duration ttl) {
+        GeminiDtos.CachedContentRequest request = GeminiDtos.CachedContentRequest.builder()
+                .model(model)
+                .systemInstruction(systemInstruction)
+                .ttl(ttl.toSeconds() + "s")
+                .build();
+
+        return webClient.post()
+                .uri(uriBuilder -> uriBuilder.path("/cachedContents").queryParam("key", apiKey).build())
+                .bodyValue(request)
+                .retrieve()
+                .bodyToMono(GeminiDtos.CachedContentResponse.class)
+                .map(response -> {
+                    if (response.getName() == null) {
+                        throw new RuntimeException("No cache name in cachedContents response");
+                    }
+                    log.info("Gemini context cache {} created, expires {}", response.getName(), response.getExpireTime());
+                    return response.getName();
+                });
+    }
+
+    @Override
+    public Mono<Void> delete(String cacheName) {
+        return webClient.delete()
+                .uri(uriBuilder -> uriBuilder.path("/" + cacheName).queryParam("key", apiKey).build())
+                .retrieve()
+                .bodyToMono(Void.class);
+    }
+}
@@ -0,0 +1,23 @@
+package com.zharkyn.aiassistant_backend.service;
+
+import com.zharkyn.aiassistant_backend.dto.GeminiDtos;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * Хранилище закешированных префиксов промпта на стороне модели.
+ * Основная реализация - cachedContents API Gemini; для тестов достаточно локальной заглушки.
+ */
+public interface GeminiContextCache {
+
+    /**
+     * Закешировать systemInstruction на ttl; возвращает имя кеша для поля cachedContent запроса
+     */
+    Mono<String> create(GeminiDtos.Content systemInstruction, Duration ttl);
+
+    /**
+     * Удалить кеш досрочно (хранение оплачивается до истечения ttl)
+     */
+    Mono<Void> delete(String cacheName);
+}
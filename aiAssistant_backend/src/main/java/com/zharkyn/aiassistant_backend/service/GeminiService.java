@@ -1,28 +1,86 @@
 package com.zharkyn.aiassistant_backend.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.zharkyn.aiassistant_backend.dto.GeminiDtos;
 import com.zharkyn.aiassistant_backend.model.ChatMessage;
+import com.zharkyn.aiassistant_backend.model.InterviewSession;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClientRequest;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 @Slf4j
 @Service
 public class GeminiService {
 
     private final WebClient webClient;
+    private final WebClient streamWebClient;
     private final String apiKey;
 
-    public GeminiService(WebClient.Builder webClientBuilder,
+    private static final String GENERATE_METHOD = ":generateContent";
+    private static final String STREAM_METHOD = ":streamGenerateContent";
+
+    // Отметка "для сессии кеш не создается" - чтобы не повторять неудачное создание на каждом ходу
+    private static final String NOT_CACHED = "";
+
+    private final GeminiContextCache contextCache;
+    private final boolean contextCacheEnabled;
+    private final int contextCacheMinTokens;
+    private final Duration contextCacheTtl;
+    // sessionId -> имя кеша префикса; локально запись живет меньше, чем кеш на стороне Gemini
+    private final Cache<String, String> prefixHandles;
+    private final SingleFlight<String, String> prefixFlights = new SingleFlight<>();
+
+    public GeminiService(@Qualifier("geminiWebClient") WebClient geminiWebClient,
                          @Value("${gemini.api.url}") String apiUrl,
-                         @Value("${gemini.api.key}") String apiKey) {
-        this.webClient = webClientBuilder.baseUrl(apiUrl).build();
+                         @Value("${gemini.api.key}") String apiKey,
+                         GeminiContextCache contextCache,
+                         @Value("${gemini.context-cache.enabled:true}") boolean contextCacheEnabled,
+                         @Value("${gemini.context-cache.min-tokens:1024}") int contextCacheMinTokens,
+                         @Value("${gemini.context-cache.ttl-minutes:30}") long contextCacheTtlMinutes,
+                         MeterRegistry meterRegistry) {
+        // Потоковый метод той же модели: ...:generateContent -> ...:streamGenerateContent.
+        // Без этого суффикса поток молча ушел бы на непотоковый URL - лучше упасть при старте.
+        if (!apiUrl.endsWith(GENERATE_METHOD)) {
+            throw new IllegalStateException("gemini.api.url must end with " + GENERATE_METHOD + ": " + apiUrl);
+        }
+        // mutate() сохраняет общий коннектор, поэтому пул соединений Gemini переиспользуется
+        this.webClient = geminiWebClient.mutate().baseUrl(apiUrl).build();
+        this.streamWebClient = geminiWebClient.mutate()
+                .baseUrl(apiUrl.substring(0, apiUrl.length() - GENERATE_METHOD.length()) + STREAM_METHOD)
+                .build();
         this.apiKey = apiKey;
+
+        this.contextCache = contextCache;
+        this.contextCacheEnabled = contextCacheEnabled;
+        this.contextCacheMinTokens = contextCacheMinTokens;
+        this.contextCacheTtl = Duration.ofMinutes(contextCacheTtlMinutes);
+        this.prefixHandles = Caffeine.newBuilder()
+                .maximumSize(10_000)
+                .expireAfterWrite(Duration.ofMinutes(Math.max(1, contextCacheTtlMinutes - 2)))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, prefixHandles, "gemini_context_cache");
+        log.info("Gemini context cache: enabled={}, minTokens={}, ttl={}m",
+                contextCacheEnabled, contextCacheMinTokens, contextCacheTtlMinutes);
     }
 
     public Mono<String> generateInitialQuestion(String position, String jobDescription, 
@@ -40,18 +98,86 @@ public class GeminiService {
         return callGemini(List.of(createContent("user", prompt)));
     }
 
-    public Mono<String> generateNextResponse(List<ChatMessage> history, String language,
+    /**
+     * Заранее создать кеш префикса сессии, чтобы второй вопрос уже ссылался на него
+     */
+    public void warmInterviewPrefix(InterviewSession session) {
+        prefixHandle(session.getId(), interviewPrefix(session)).subscribe();
+    }
+
+    /**
+     * Интервью закончено - удалить кеш префикса, не дожидаясь ttl
+     */
+    public void releaseInterviewPrefix(String sessionId) {
+        String cacheName = prefixHandles.getIfPresent(sessionId);
+        prefixHandles.invalidate(sessionId);
+        if (cacheName == null || cacheName.isEmpty()) {
+            return;
+        }
+        contextCache.delete(cacheName).subscribe(
+                null, error -> log.warn("Failed to delete Gemini context cache {}: {}", cacheName, error.getMessage()));
+    }
+
+    /**
+     * history - окно последних сообщений; historySummary - сводка более ранней части диалога (может быть null)
+     */
+    public Mono<String> generateNextResponse(InterviewSession session, String historySummary, List<ChatMessage> history,
                                             ChatMessage.QuestionType questionType,
                                             int questionNumber, int totalQuestions) {
-        String languageInstruction = getLanguageInstruction(language);
+        return buildNextResponseRequest(session, historySummary, history, questionType, questionNumber, totalQuestions)
+                .flatMap(request -> generate(request)
+                        .onErrorResume(error -> isStaleCache(request, error),
+                                error -> generate(withoutStaleCache(session, request))));
+    }
+
+    /**
+     * Потоковая версия generateNextResponse (streamGenerateContent, alt=sse).
+     * Возвращает фрагменты текста по мере генерации.
+     */
+    public Flux<String> streamNextResponse(InterviewSession session, String historySummary, List<ChatMessage> history,
+                                           ChatMessage.QuestionType questionType,
+                                           int questionNumber, int totalQuestions) {
+        return buildNextResponseRequest(session, historySummary, history, questionType, questionNumber, totalQuestions)
+                .flatMapMany(request -> stream(request)
+                        .onErrorResume(error -> isStaleCache(request, error),
+                                error -> stream(withoutStaleCache(session, request))));
+    }
+
+    private Flux<String> stream(GeminiDtos.GeminiRequest request) {
+        return streamWebClient.post()
+                .uri(uriBuilder -> uriBuilder.queryParam("alt", "sse").queryParam("key", apiKey).build())
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .bodyValue(request)
+                .retrieve()
+                .bodyToFlux(new ParameterizedTypeReference<ServerSentEvent<GeminiDtos.GeminiResponse>>() {})
+                .doOnError(error -> log.error("Error streaming from Gemini API", error))
+                .mapNotNull(event -> extractText(event.data()))
+                .filter(text -> !text.isEmpty());
+    }
+
+    /**
+     * Запрос следующего вопроса: стабильный префикс сессии идет ссылкой на кеш Gemini.
+     * Если кеша нет (префикс короче min-tokens, кеширование выключено или недоступно), запрос такой же,
+     * как до кеширования: история и follow-up без префикса - описание вакансии уходит только с первым вопросом.
+     */
+    private Mono<GeminiDtos.GeminiRequest> buildNextResponseRequest(InterviewSession session, String historySummary,
+                                                                    List<ChatMessage> history,
+                                                                    ChatMessage.QuestionType questionType,
+                                                                    int questionNumber, int totalQuestions) {
+        String languageInstruction = getLanguageInstruction(session.getLanguage());
         String questionTypeInstruction = getQuestionTypeInstruction(questionType);
         
-        List<GeminiDtos.Content> contents = history.stream()
+        List<GeminiDtos.Content> contents = new ArrayList<>();
+        if (historySummary != null && !historySummary.isBlank()) {
+            contents.add(createContent("user",
+                    "Summary of the earlier part of this interview (questions asked and my answers): " + historySummary));
+        }
+        history.stream()
                 .map(msg -> {
                     String geminiRole = msg.getRole().name().equals("USER") ? "user" : "model";
                     return createContent(geminiRole, msg.getContent());
                 })
-                .collect(Collectors.toList());
+                .forEach(contents::add);
 
         String followUpPrompt = String.format(
             "%s This is question %d out of %d questions. %s " +
@@ -62,24 +188,97 @@ public class GeminiService {
         
         contents.add(createContent("user", followUpPrompt));
 
-        GeminiDtos.GeminiRequest request = GeminiDtos.GeminiRequest.builder()
-                .contents(contents)
+        return prefixHandle(session.getId(), interviewPrefix(session))
+                .map(cacheName -> GeminiDtos.GeminiRequest.builder()
+                        .contents(contents)
+                        .cachedContent(cacheName)
+                        .build())
+                .defaultIfEmpty(GeminiDtos.GeminiRequest.builder()
+                        .contents(contents)
+                        .build());
+    }
+
+    /**
+     * Стабильная для всей сессии часть промпта: язык, роль интервьюера, позиция и описание вакансии
+     */
+    private GeminiDtos.Content interviewPrefix(InterviewSession session) {
+        String text = String.format(
+                "%s Act as a friendly but professional interviewer. I am applying for the position of %s. " +
+                "Here is the job description: '%s'.",
+                getLanguageInstruction(session.getLanguage()), session.getPosition(),
+                session.getJobDescription() != null ? session.getJobDescription() : "");
+        return GeminiDtos.Content.builder()
+                .parts(List.of(GeminiDtos.Part.builder().text(text).build()))
                 .build();
+    }
 
-        return webClient.post()
-                .uri(uriBuilder -> uriBuilder.queryParam("key", apiKey).build())
-                .bodyValue(request)
-                .retrieve()
-                .bodyToMono(GeminiDtos.GeminiResponse.class)
-                .doOnError(error -> log.error("Error calling Gemini API", error))
-                .map(response -> {
-                    if (response.getCandidates() == null || response.getCandidates().isEmpty()) {
-                        throw new RuntimeException("No response from Gemini API");
-                    }
-                    return response.getCandidates().get(0).getContent().getParts().get(0).getText();
+    /**
+     * Имя кеша префикса сессии. Пусто, если кеширование выключено, префикс короче минимума
+     * для кеша Gemini (оценка ~4 символа на токен) или кеш создать не удалось.
+     * Одновременные ходы одной сессии создают кеш один раз.
+     */
+    private Mono<String> prefixHandle(String sessionId, GeminiDtos.Content prefix) {
+        if (!contextCacheEnabled || sessionId == null
+                || prefix.getParts().get(0).getText().length() / 4 < contextCacheMinTokens) {
+            return Mono.empty();
+        }
+        String cached = prefixHandles.getIfPresent(sessionId);
+        if (cached != null) {
+            return cached.isEmpty() ? Mono.empty() : Mono.just(cached);
+        }
+        return Mono.fromFuture(() -> prefixFlights.execute(sessionId,
+                        () -> contextCache.create(prefix, contextCacheTtl)
+                                .doOnNext(cacheName -> prefixHandles.put(sessionId, cacheName))
+                                .toFuture()))
+                .onErrorResume(error -> {
+                    log.warn("Gemini context cache unavailable for session {}, sending requests without it: {}",
+                            sessionId, error.getMessage());
+                    prefixHandles.put(sessionId, NOT_CACHED);
+                    return Mono.empty();
                 });
     }
 
+    /**
+     * Кеш истек или удален раньше локальной записи - Gemini отвечает 404 (NOT_FOUND) или 403
+     * (PERMISSION_DENIED) на cachedContent. 429 и прочие 4xx к кешу не относятся и уходят вызывающему как есть.
+     */
+    private boolean isStaleCache(GeminiDtos.GeminiRequest request, Throwable error) {
+        if (request.getCachedContent() == null || !(error instanceof WebClientResponseException responseError)) {
+            return false;
+        }
+        HttpStatusCode status = responseError.getStatusCode();
+        return status.isSameCodeAs(HttpStatus.NOT_FOUND) || status.isSameCodeAs(HttpStatus.FORBIDDEN);
+    }
+
+    /**
+     * Забыть отклоненный кеш (следующий ход создаст новый) и удалить его на стороне Gemini,
+     * если он там еще есть; текущий ход повторяется без кеша
+     */
+    private GeminiDtos.GeminiRequest withoutStaleCache(InterviewSession session, GeminiDtos.GeminiRequest request) {
+        String cacheName = request.getCachedContent();
+        log.warn("Gemini context cache {} rejected, retrying without it", cacheName);
+        prefixHandles.asMap().remove(session.getId(), cacheName);
+        contextCache.delete(cacheName).subscribe(
+                null, error -> log.debug("Stale Gemini context cache {} not deleted: {}", cacheName, error.getMessage()));
+        return GeminiDtos.GeminiRequest.builder()
+                .contents(request.getContents())
+                .build();
+    }
+
+    /**
+     * Текст первого кандидата из чанка потока (в служебных чанках его может не быть)
+     */
+    private String extractText(GeminiDtos.GeminiResponse response) {
+        if (response == null || response.getCandidates() == null || response.getCandidates().isEmpty()) {
+            return null;
+        }
+        GeminiDtos.Content content = response.getCandidates().get(0).getContent();
+        if (content == null || content.getParts() == null || content.getParts().isEmpty()) {
+            return null;
+        }
+        return content.getParts().get(0).getText();
+    }
+
     private String getLanguageInstruction(String language) {
         switch (language) {
             case "ru":
@@ -110,12 +309,34 @@ public class GeminiService {
     }
 
     private Mono<String> callGemini(List<GeminiDtos.Content> contents) {
-        GeminiDtos.GeminiRequest request = GeminiDtos.GeminiRequest.builder()
+        return callGemini(contents, null, null);
+    }
+
+    /**
+     * generationConfig может быть null - тогда ответ обычным текстом;
+     * responseTimeout null - общий таймаут клиента (http.client.gemini.response-timeout-seconds)
+     */
+    private Mono<String> callGemini(List<GeminiDtos.Content> contents, GeminiDtos.GenerationConfig generationConfig,
+                                    Duration responseTimeout) {
+        return generate(GeminiDtos.GeminiRequest.builder()
                 .contents(contents)
-                .build();
+                .generationConfig(generationConfig)
+                .build(), responseTimeout);
+    }
 
+    private Mono<String> generate(GeminiDtos.GeminiRequest request) {
+        return generate(request, null);
+    }
+
+    private Mono<String> generate(GeminiDtos.GeminiRequest request, Duration responseTimeout) {
         return webClient.post()
                 .uri(uriBuilder -> uriBuilder.queryParam("key", apiKey).build())
+                .httpRequest(httpRequest -> {
+                    if (responseTimeout != null) {
+                        HttpClientRequest nativeRequest = httpRequest.getNativeRequest();
+                        nativeRequest.responseTimeout(responseTimeout);
+                    }
+                })
                 .bodyValue(request)
                 .retrieve()
                 .bodyToMono(GeminiDtos.GeminiResponse.class)
@@ -134,24 +355,34 @@ public class GeminiService {
                 .parts(List.of(GeminiDtos.Part.builder().text(text).build()))
                 .build();
     }
-    public Mono<String> evaluateAnswer(String evaluationPrompt) {
-        GeminiDtos.Content content = createContent("user", evaluationPrompt);
-        
-        GeminiDtos.GeminiRequest request = GeminiDtos.GeminiRequest.builder()
-                .contents(List.of(content))
-                .build();
+    /**
+     * Дополнить сводку интервью новыми сообщениями (инкрементально: старая сводка + только новые реплики)
+     */
+    public Mono<String> summarizeConversation(String previousSummary, List<ChatMessage> newMessages) {
+        StringBuilder prompt = new StringBuilder(
+                "You maintain a running summary of a job interview between an interviewer and a candidate. " +
+                "Update the summary with the new messages below. Keep which topics were already asked " +
+                "and the key facts, skills and examples from the candidate's answers. " +
+                "Write at most 200 words in the language of the interview. Just provide the summary, no preamble.\n\n");
+        prompt.append("Current summary: ")
+                .append(previousSummary == null || previousSummary.isBlank() ? "(empty)" : previousSummary)
+                .append("\n\nNew messages:\n");
+        for (ChatMessage msg : newMessages) {
+            prompt.append(msg.getRole() == ChatMessage.MessageRole.USER ? "Candidate: " : "Interviewer: ")
+                    .append(msg.getContent())
+                    .append("\n");
+        }
+        return callGemini(List.of(createContent("user", prompt.toString())));
+    }
 
-        return webClient.post()
-                .uri(uriBuilder -> uriBuilder.queryParam("key", apiKey).build())
-                .bodyValue(request)
-                .retrieve()
-                .bodyToMono(GeminiDtos.GeminiResponse.class)
-                .doOnError(error -> log.error("Error calling Gemini API for evaluation", error))
-                .map(response -> {
-                    if (response.getCandidates() == null || response.getCandidates().isEmpty()) {
-                        throw new RuntimeException("No response from Gemini API");
-                    }
-                    return response.getCandidates().get(0).getContent().getParts().get(0).getText();
-                });
+    /**
+     * Запрос со структурированным ответом: модель возвращает JSON по схеме responseSchema.
+     * responseTimeout заменяет общий таймаут клиента для этого запроса (пакетная оценка бывает дольше).
+     */
+    public Mono<String> generateJson(String prompt, Map<String, Object> responseSchema, Duration responseTimeout) {
+        return callGemini(List.of(createContent("user", prompt)), GeminiDtos.GenerationConfig.builder()
+                .responseMimeType("application/json")
+                .responseSchema(responseSchema)
+                .build(), responseTimeout);
     }
 }
\ No newline at end of file
@@ -3,12 +3,20 @@ package com.zharkyn.aiassistant_backend.service;
 import com.zharkyn.aiassistant_backend.dto.AnalyticsDtos;
 import com.zharkyn.aiassistant_backend.model.ChatMessage;
 import com.zharkyn.aiassistant_backend.model.InterviewEvaluation;
+import com.zharkyn.aiassistant_backend.model.InterviewSession;
+import com.zharkyn.aiassistant_backend.repository.ChatMessageRepository;
 import com.zharkyn.aiassistant_backend.repository.InterviewEvaluationRepository;
+import com.zharkyn.aiassistant_backend.repository.InterviewSessionRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
 
@@ -22,105 +30,208 @@ public class InterviewAnalyticsService {
 
     private final GeminiService geminiService;
     private final InterviewEvaluationRepository evaluationRepository;
+    private final InterviewSessionRepository sessionRepository;
+    private final ChatMessageRepository chatMessageRepository;
+    private final ReportCache reportCache;
+    private final BackgroundJobService backgroundJobs;
+    private final EvaluationParser evaluationParser = new EvaluationParser();
+
+    // Схемы ответа оценки (формат responseSchema Gemini): одна оценка и массив оценок с id
+    private static final Map<String, Object> EVALUATION_SCHEMA = evaluationSchema(false);
+    private static final Map<String, Object> BATCH_EVALUATION_SCHEMA = Map.of(
+            "type", "ARRAY",
+            "items", evaluationSchema(true));
+
+    private final SingleFlight<String, AnalyticsDtos.InterviewReport> reportFlights = new SingleFlight<>();
+
+    @Value("${analytics.grading.concurrency:5}")
+    private int gradingConcurrency;
+
+    @Value("${analytics.grading.timeout-seconds:30}")
+    private long gradingTimeoutSeconds;
+
+    // Сколько ответов оценивать одним запросом к Gemini (1 - по одному ответу на запрос)
+    @Value("${analytics.grading.batch-size:10}")
+    private int gradingBatchSize;
+
+    @Value("${analytics.grading.batch-timeout-seconds:90}")
+    private long gradingBatchTimeoutSeconds;
+
+    // Оценивать каждый ответ сразу после отправки, а не при первом запросе отчета
+    @Value("${analytics.grading.incremental:false}")
+    private boolean incrementalGrading;
 
     /**
-     * Оценить ответ пользователя с помощью AI
+     * Режим analytics.grading.incremental: поставить только что сохраненный ответ в фоновую очередь оценки.
+     * К концу интервью отчет почти целиком собирается из готовых оценок.
+     * Ошибки повторяются очередью; если оценка так и не удалась или задача отброшена при переполнении,
+     * ответ будет оценен при построении отчета.
      */
-    public AnalyticsDtos.AnswerEvaluation evaluateAnswer(
-            String question, String answer, String position, ChatMessage.QuestionType questionType) {
+    public void gradeAnswerInBackground(InterviewSession session, ChatMessage question, ChatMessage answer) {
+        if (!incrementalGrading || answer.getQuestionNumber() == null) {
+            return;
+        }
+        if (question == null) {
+            log.warn("Question #{} not found for interview {}, skipping incremental grading",
+                    answer.getQuestionNumber(), session.getId());
+            return;
+        }
+        backgroundJobs.submitBestEffort("analytics.grade_answer",
+                () -> gradeAndSave(session.getId(), session.getPosition(), question, answer));
+    }
+
+    private InterviewEvaluation gradeAndSave(String interviewId, String position, ChatMessage question, ChatMessage answer)
+            throws ExecutionException, InterruptedException {
+        Integer questionNumber = answer.getQuestionNumber();
+        Optional<InterviewEvaluation> existing =
+                evaluationRepository.findByInterviewIdAndQuestionNumber(interviewId, questionNumber);
+        if (existing.isPresent()) {
+            return existing.get();
+        }
         
-        log.info("Evaluating answer for question type: {}", questionType);
+        // Ошибка AI пробрасывается - очередь повторит задачу; запасная оценка не сохраняется
+        AnalyticsDtos.AnswerEvaluation aiEval = requestEvaluation(
+                question.getContent(), answer.getContent(), position, question.getQuestionType()).block();
+        InterviewEvaluation evaluation = toEvaluation(
+                interviewId, new PendingAnswer(0, questionNumber, question, answer), aiEval);
+        evaluationRepository.save(evaluation);
+        reportCache.invalidate(interviewId);
+        log.info("Answer #{} for interview {} graded incrementally: {}", questionNumber, interviewId, evaluation.getScore());
+        return evaluation;
+    }
+
+    /**
+     * Запросить оценку у AI без блокировки (ограничено таймаутом grading)
+     */
+    private Mono<AnalyticsDtos.AnswerEvaluation> requestEvaluation(
+            String question, String answer, String position, ChatMessage.QuestionType questionType) {
+        String evaluationPrompt = buildEvaluationPrompt(question, answer, position, questionType);
         
-        try {
-            String evaluationPrompt = buildEvaluationPrompt(question, answer, position, questionType);
-            
-            String aiEvaluation = geminiService.evaluateAnswer(evaluationPrompt).block();
-            
-            return parseAIEvaluation(aiEvaluation, questionType);
-            
-        } catch (Exception e) {
-            log.error("Error evaluating answer", e);
-            return createDefaultEvaluation(questionType);
-        }
+        Duration timeout = Duration.ofSeconds(gradingTimeoutSeconds);
+        return geminiService.generateJson(evaluationPrompt, EVALUATION_SCHEMA, timeout)
+                .timeout(timeout)
+                .map(aiEvaluation -> evaluationParser.parseEvaluation(aiEvaluation, questionType));
     }
 
     /**
-     * Генерировать детальный отчет по интервью (публичный метод)
+     * Генерировать детальный отчет по интервью (публичный метод).
+     * Одновременные запросы по одному интервью (страница результатов, экспорт PDF/HTML)
+     * ждут одно вычисление, а не оценивают недостающие ответы через Gemini каждый заново.
      */
     public AnalyticsDtos.InterviewReport generateInterviewReport(String interviewId) 
             throws ExecutionException, InterruptedException {
         
-        // Получаем сессию и сообщения
-        com.google.cloud.firestore.Firestore dbFirestore = 
-            com.google.firebase.cloud.FirestoreClient.getFirestore();
+        AnalyticsDtos.InterviewReport cached = reportCache.get(interviewId);
+        if (cached != null) {
+            log.debug("Serving cached report for interview: {}", interviewId);
+            return cached;
+        }
         
-        com.zharkyn.aiassistant_backend.model.InterviewSession session = 
-            dbFirestore.collection("interview_sessions")
-                .document(interviewId)
-                .get()
-                .get()
-                .toObject(com.zharkyn.aiassistant_backend.model.InterviewSession.class);
+        CompletableFuture<AnalyticsDtos.InterviewReport> flight = reportFlights.execute(interviewId, () -> {
+            // Вычисление идет в потоке первого запроса, остальные ждут его future
+            try {
+                return CompletableFuture.completedFuture(computeInterviewReport(interviewId));
+            } catch (Exception e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        });
+        try {
+            return flight.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw e;
+        }
+    }
+
+    private AnalyticsDtos.InterviewReport computeInterviewReport(String interviewId) 
+            throws ExecutionException, InterruptedException {
         
+        // Версию запоминаем до чтения: оценки, записанные во время вычисления, сделают результат устаревшим
+        long version = reportCache.version(interviewId);
+        
+        // Сессия, сообщения и уже сохраненные оценки читаются параллельно
+        CompletableFuture<InterviewSession> sessionFuture = sessionRepository.findByIdAsync(interviewId);
+        CompletableFuture<List<ChatMessage>> messagesFuture =
+                chatMessageRepository.findBySessionIdOrderByTimestampAscAsync(interviewId);
+        CompletableFuture<List<InterviewEvaluation>> evaluationsFuture =
+                evaluationRepository.findByInterviewIdAsync(interviewId);
+        CompletableFuture.allOf(sessionFuture, messagesFuture, evaluationsFuture).get();
+        
+        InterviewSession session = sessionFuture.join();
         if (session == null) {
             throw new RuntimeException("Interview not found");
         }
         
-        // Получаем сообщения
-        com.zharkyn.aiassistant_backend.repository.ChatMessageRepository msgRepo = 
-            new com.zharkyn.aiassistant_backend.repository.ChatMessageRepository();
-        List<ChatMessage> messages = msgRepo.findBySessionIdOrderByTimestampAsc(interviewId);
+        BuiltReport built = generateReport(
+                interviewId, messagesFuture.join(), evaluationsFuture.join(), session.getPosition(), version);
         
-        return generateReport(interviewId, messages, session.getPosition());
+        // Отчет завершенного интервью со всеми реальными оценками больше не меняется
+        if (session.getStatus() == InterviewSession.InterviewStatus.COMPLETED && built.fullyGraded()) {
+            reportCache.put(interviewId, built.version(), built.report());
+        }
+        return built.report();
     }
     
     /**
      * Генерировать детальный отчет по интервью (внутренний метод)
      */
-    private AnalyticsDtos.InterviewReport generateReport(
-            String interviewId, List<ChatMessage> messages, String position) 
+    private BuiltReport generateReport(
+            String interviewId, List<ChatMessage> messages,
+            List<InterviewEvaluation> existingEvaluations, String position, long version) 
             throws ExecutionException, InterruptedException {
         
         log.info("Generating report for interview: {}", interviewId);
         
-        // Получаем или создаем оценки для каждого ответа
+        Map<Integer, InterviewEvaluation> existingByQuestion = new HashMap<>();
+        for (InterviewEvaluation existing : existingEvaluations) {
+            existingByQuestion.putIfAbsent(existing.getQuestionNumber(), existing);
+        }
+        
+        // Собираем оценки в порядке интервью, недостающие откладываем на grading
         List<InterviewEvaluation> evaluations = new ArrayList<>();
+        List<PendingAnswer> pending = new ArrayList<>();
         
-        for (int i = 0; i < messages.size(); i++) {
+        for (int i = 1; i < messages.size(); i++) {
             ChatMessage msg = messages.get(i);
-            if (msg.getRole() == ChatMessage.MessageRole.USER && i > 0) {
-                ChatMessage question = messages.get(i - 1);
-                
-                // Проверяем есть ли уже оценка
-                Optional<InterviewEvaluation> existing = evaluationRepository
-                    .findByInterviewIdAndQuestionNumber(interviewId, msg.getQuestionNumber());
-                
-                InterviewEvaluation evaluation;
-                if (existing.isPresent()) {
-                    evaluation = existing.get();
+            if (msg.getRole() != ChatMessage.MessageRole.USER) {
+                continue;
+            }
+            
+            ChatMessage question = messages.get(i - 1);
+            Integer questionNumber = msg.getQuestionNumber() != null
+                    ? msg.getQuestionNumber()
+                    : question.getQuestionNumber();
+            
+            InterviewEvaluation existing = existingByQuestion.get(questionNumber);
+            if (existing != null) {
+                evaluations.add(existing);
+            } else {
+                pending.add(new PendingAnswer(evaluations.size(), questionNumber, question, msg));
+                evaluations.add(null);
+            }
+        }
+        
+        boolean fullyGraded = true;
+        if (!pending.isEmpty()) {
+            List<InterviewEvaluation> toSave = new ArrayList<>();
+            
+            for (GradedAnswer graded : gradeConcurrently(interviewId, pending, position)) {
+                evaluations.set(graded.answer().index(), graded.evaluation());
+                if (graded.successful()) {
+                    toSave.add(graded.evaluation());
                 } else {
-                    // Создаем новую оценку
-                    AnalyticsDtos.AnswerEvaluation aiEval = evaluateAnswer(
-                        question.getContent(), 
-                        msg.getContent(), 
-                        position,
-                        question.getQuestionType()
-                    );
-                    
-                    evaluation = InterviewEvaluation.builder()
-                        .interviewId(interviewId)
-                        .questionNumber(msg.getQuestionNumber())
-                        .questionType(question.getQuestionType())
-                        .score(aiEval.getScore())
-                        .feedback(aiEval.getFeedback())
-                        .strengths(aiEval.getStrengths())
-                        .improvements(aiEval.getImprovements())
-                        .build();
-                    
-                    evaluationRepository.save(evaluation);
+                    fullyGraded = false;
                 }
-                
-                evaluations.add(evaluation);
             }
+            
+            // Сохраняем только реальные оценки AI - запасные будут пересчитаны в следующий раз
+            evaluationRepository.saveAll(toSave);
+            // Свои записи отчет уже учитывает. Но если с момента чтения версию поднял кто-то еще
+            // (фоновая оценка), отчет построен по старому набору оценок и кешироваться не должен
+            long savedVersion = reportCache.invalidate(interviewId);
+            version = savedVersion == version + 1 ? savedVersion : ReportCache.STALE_VERSION;
         }
         
         // Анализируем по категориям навыков
@@ -150,7 +261,7 @@ public class InterviewAnalyticsService {
             .limit(5)
             .collect(Collectors.toList());
         
-        return AnalyticsDtos.InterviewReport.builder()
+        AnalyticsDtos.InterviewReport report = AnalyticsDtos.InterviewReport.builder()
             .interviewId(interviewId)
             .overallScore(averageScore)
             .totalQuestions(totalQuestions)
@@ -162,6 +273,107 @@ public class InterviewAnalyticsService {
                 .map(this::mapToQuestionEvaluation)
                 .collect(Collectors.toList()))
             .build();
+        
+        return new BuiltReport(report, fullyGraded, version);
+    }
+
+    /**
+     * Параллельно оценить недостающие ответы с ограничением конкурентности и таймаутом
+     */
+    private List<GradedAnswer> gradeConcurrently(
+            String interviewId, List<PendingAnswer> pending, String position) {
+        
+        log.info("Grading {} answers for interview {} (concurrency: {}, batch size: {})", 
+                pending.size(), interviewId, gradingConcurrency, gradingBatchSize);
+        
+        if (gradingBatchSize > 1 && pending.size() > 1) {
+            List<List<PendingAnswer>> batches = new ArrayList<>();
+            for (int from = 0; from < pending.size(); from += gradingBatchSize) {
+                batches.add(pending.subList(from, Math.min(from + gradingBatchSize, pending.size())));
+            }
+            return Flux.fromIterable(batches)
+                    .flatMapSequential(batch -> gradeBatch(interviewId, batch, position), gradingConcurrency)
+                    .flatMapIterable(graded -> graded)
+                    .collectList()
+                    .block();
+        }
+        
+        return Flux.fromIterable(pending)
+                .flatMapSequential(answer -> gradeAnswer(interviewId, answer, position), gradingConcurrency)
+                .collectList()
+                .block();
+    }
+
+    /**
+     * Оценить несколько ответов одним запросом со структурированным выводом (JSON по схеме).
+     * Ответы, оценка которых не пришла или не прошла проверку, оцениваются по одному.
+     */
+    private Mono<List<GradedAnswer>> gradeBatch(String interviewId, List<PendingAnswer> batch, String position) {
+        // Свой таймаут ответа HTTP: общий таймаут клиента Gemini (60 с) меньше бюджета пакета
+        Duration timeout = Duration.ofSeconds(gradingBatchTimeoutSeconds);
+        return geminiService.generateJson(buildBatchEvaluationPrompt(batch, position), BATCH_EVALUATION_SCHEMA, timeout)
+                .timeout(timeout)
+                .map(json -> evaluationParser.parseBatch(json, questionTypes(batch)))
+                .onErrorResume(e -> {
+                    log.warn("Batch grading failed for interview {}, grading {} answers one by one: {}",
+                            interviewId, batch.size(), e.getMessage());
+                    return Mono.just(Map.of());
+                })
+                .flatMap(parsed -> {
+                    if (parsed.size() < batch.size()) {
+                        log.info("Batch grading returned {}/{} valid items for interview {}",
+                                parsed.size(), batch.size(), interviewId);
+                    }
+                    return Flux.fromIterable(batch)
+                            .flatMapSequential(answer -> {
+                                AnalyticsDtos.AnswerEvaluation aiEval = parsed.get(answer.index());
+                                if (aiEval != null) {
+                                    return Mono.just(new GradedAnswer(answer, toEvaluation(interviewId, answer, aiEval), true));
+                                }
+                                return gradeAnswer(interviewId, answer, position);
+                            }, gradingConcurrency)
+                            .collectList();
+                });
+    }
+
+    private static Map<Integer, ChatMessage.QuestionType> questionTypes(List<PendingAnswer> batch) {
+        Map<Integer, ChatMessage.QuestionType> types = new HashMap<>();
+        for (PendingAnswer answer : batch) {
+            types.put(answer.index(), answer.question().getQuestionType());
+        }
+        return types;
+    }
+
+    private Mono<GradedAnswer> gradeAnswer(String interviewId, PendingAnswer answer, String position) {
+        ChatMessage.QuestionType questionType = answer.question().getQuestionType();
+        
+        return requestEvaluation(
+                    answer.question().getContent(),
+                    answer.answer().getContent(),
+                    position,
+                    questionType)
+                .map(aiEval -> new GradedAnswer(answer, toEvaluation(interviewId, answer, aiEval), true))
+                .onErrorResume(e -> {
+                    // Запасная оценка только для показа в этом отчете: successful=false, в Firestore не пишется
+                    log.error("Error grading answer #{} for interview {}", answer.questionNumber(), interviewId, e);
+                    return Mono.just(new GradedAnswer(answer,
+                            toEvaluation(interviewId, answer, createDefaultEvaluation(questionType)), false));
+                });
+    }
+
+    private InterviewEvaluation toEvaluation(
+            String interviewId, PendingAnswer answer, AnalyticsDtos.AnswerEvaluation aiEval) {
+        // Детерминированный ID: фоновая оценка и оценка при построении отчета перезаписывают один документ
+        return InterviewEvaluation.builder()
+                .id(InterviewEvaluationRepository.documentId(interviewId, answer.questionNumber()))
+                .interviewId(interviewId)
+                .questionNumber(answer.questionNumber())
+                .questionType(answer.question().getQuestionType())
+                .score(aiEval.getScore())
+                .feedback(aiEval.getFeedback())
+                .strengths(aiEval.getStrengths())
+                .improvements(aiEval.getImprovements())
+                .build();
     }
 
     /**
@@ -249,86 +461,30 @@ public class InterviewAnalyticsService {
             "Question Type: %s\n" +
             "Question: %s\n" +
             "Candidate's Answer: %s\n\n" +
-            "Please evaluate this answer and provide:\n" +
-            "1. Score (0-10)\n" +
-            "2. Overall Feedback (2-3 sentences)\n" +
-            "3. Strengths (list 2-3 points)\n" +
-            "4. Areas for Improvement (list 2-3 points)\n\n" +
-            "Format your response as:\n" +
-            "Score: X/10\n" +
-            "Feedback: [your feedback]\n" +
-            "Strengths:\n- [strength 1]\n- [strength 2]\n" +
-            "Improvements:\n- [improvement 1]\n- [improvement 2]",
+            "Please evaluate this answer and return a JSON object with:\n" +
+            "score (integer 0-10), feedback (2-3 sentences), " +
+            "strengths (2-3 points), improvements (2-3 points).",
             position, questionType, question, answer
         );
     }
 
-    private AnalyticsDtos.AnswerEvaluation parseAIEvaluation(String aiResponse, 
-                                                            ChatMessage.QuestionType questionType) {
-        try {
-            int score = extractScore(aiResponse);
-            String feedback = extractSection(aiResponse, "Feedback:");
-            List<String> strengths = extractList(aiResponse, "Strengths:");
-            List<String> improvements = extractList(aiResponse, "Improvements:");
-            
-            return AnalyticsDtos.AnswerEvaluation.builder()
-                .score(score)
-                .feedback(feedback)
-                .strengths(strengths)
-                .improvements(improvements)
-                .questionType(questionType.name())
-                .build();
-        } catch (Exception e) {
-            log.error("Error parsing AI evaluation", e);
-            return createDefaultEvaluation(questionType);
-        }
-    }
-
-    private int extractScore(String text) {
-        // Ищем паттерн "Score: X/10"
-        String[] lines = text.split("\n");
-        for (String line : lines) {
-            if (line.startsWith("Score:")) {
-                String scoreStr = line.replace("Score:", "").replace("/10", "").trim();
-                try {
-                    return Integer.parseInt(scoreStr);
-                } catch (NumberFormatException e) {
-                    return 7; // Default
-                }
-            }
-        }
-        return 7;
-    }
-
-    private String extractSection(String text, String sectionName) {
-        String[] lines = text.split("\n");
-        for (int i = 0; i < lines.length; i++) {
-            if (lines[i].startsWith(sectionName)) {
-                return lines[i].replace(sectionName, "").trim();
-            }
-        }
-        return "Good answer overall.";
-    }
-
-    private List<String> extractList(String text, String sectionName) {
-        List<String> items = new ArrayList<>();
-        String[] lines = text.split("\n");
-        boolean inSection = false;
-        
-        for (String line : lines) {
-            if (line.startsWith(sectionName)) {
-                inSection = true;
-                continue;
-            }
-            
-            if (inSection && line.startsWith("-")) {
-                items.add(line.replace("-", "").trim());
-            } else if (inSection && !line.startsWith("-") && !line.trim().isEmpty()) {
-                break; // End of section
-            }
+    /**
+     * Общий контекст оценки один раз, затем пары вопрос/ответ с id (индекс ответа в отчете)
+     */
+    private String buildBatchEvaluationPrompt(List<PendingAnswer> batch, String position) {
+        StringBuilder prompt = new StringBuilder()
+            .append("You are an expert interviewer evaluating a candidate's answers.\n\n")
+            .append("Position: ").append(position).append("\n\n")
+            .append("For every item below return one object with the same id and:\n")
+            .append("score (integer 0-10), feedback (2-3 sentences), ")
+            .append("strengths (2-3 points), improvements (2-3 points).\n\n");
+        for (PendingAnswer answer : batch) {
+            prompt.append("Item ").append(answer.index())
+                .append(" (Question Type: ").append(answer.question().getQuestionType()).append(")\n")
+                .append("Question: ").append(answer.question().getContent()).append("\n")
+                .append("Candidate's Answer: ").append(answer.answer().getContent()).append("\n\n");
         }
-        
-        return items.isEmpty() ? List.of("Continue practicing") : items;
+        return prompt.toString();
     }
 
     private AnalyticsDtos.AnswerEvaluation createDefaultEvaluation(ChatMessage.QuestionType questionType) {
@@ -366,4 +522,28 @@ public class InterviewAnalyticsService {
             .improvements(eval.getImprovements())
             .build();
     }
+
+    /**
+     * Ответ, для которого еще нет оценки; index - позиция в итоговом списке оценок
+     */
+    private record PendingAnswer(int index, Integer questionNumber, ChatMessage question, ChatMessage answer) {}
+
+    private static Map<String, Object> evaluationSchema(boolean withId) {
+        Map<String, Object> properties = new LinkedHashMap<>();
+        List<String> required = new ArrayList<>();
+        if (withId) {
+            properties.put("id", Map.of("type", "INTEGER"));
+            required.add("id");
+        }
+        properties.put("score", Map.of("type", "INTEGER"));
+        properties.put("feedback", Map.of("type", "STRING"));
+        properties.put("strengths", Map.of("type", "ARRAY", "items", Map.of("type", "STRING")));
+        properties.put("improvements", Map.of("type", "ARRAY", "items", Map.of("type", "STRING")));
+        required.addAll(List.of("score", "feedback", "strengths", "improvements"));
+        return Map.of("type", "OBJECT", "properties", properties, "required", required);
+    }
+
+    private record BuiltReport(AnalyticsDtos.InterviewReport report, boolean fullyGraded, long version) {}
+
+    private record GradedAnswer(PendingAnswer answer, InterviewEvaluation evaluation, boolean successful) {}
 }
\ No newline at end of file
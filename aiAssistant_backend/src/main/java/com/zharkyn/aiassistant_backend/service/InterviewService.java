@@ -1,10 +1,6 @@
 package com.zharkyn.aiassistant_backend.service;
 
-import com.google.api.core.ApiFuture;
 import com.google.cloud.Timestamp;
-import com.google.cloud.firestore.Firestore;
-import com.google.cloud.firestore.QuerySnapshot;
-import com.google.firebase.cloud.FirestoreClient;
 import com.zharkyn.aiassistant_backend.dto.InterviewDtos;
 import com.zharkyn.aiassistant_backend.model.ChatMessage;
 import com.zharkyn.aiassistant_backend.model.InterviewSession;
@@ -14,11 +10,19 @@ import com.zharkyn.aiassistant_backend.repository.InterviewSessionRepository;
 import com.zharkyn.aiassistant_backend.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
 
@@ -31,6 +35,9 @@ public class InterviewService {
     private final ChatMessageRepository messageRepository;
     private final UserRepository userRepository;
     private final GeminiService geminiService;
+    private final InterviewAnalyticsService analyticsService;
+    private final ConversationContextManager contextManager;
+    private final ConversationCache conversationCache;
 
     private static final int TOTAL_QUESTIONS = 20;
     private static final int BACKGROUND_QUESTIONS = 5;  // Вопросы 1-5
@@ -58,6 +65,8 @@ public class InterviewService {
                 .build();
         session = sessionRepository.save(session);
         log.info("Interview session created with ID: {}", session.getId());
+        // Кеш префикса создается параллельно с первым вопросом и пригодится со второго
+        geminiService.warmInterviewPrefix(session);
 
         // Определяем тип первого вопроса
         ChatMessage.QuestionType questionType = determineQuestionType(1);
@@ -87,6 +96,7 @@ public class InterviewService {
                 .timestamp(System.currentTimeMillis())
                 .build();
         messageRepository.save(firstMessage);
+        conversationCache.put(session.getId(), List.of(firstMessage));
         log.info("First message saved");
 
         return InterviewDtos.StartInterviewResponse.builder()
@@ -98,100 +108,243 @@ public class InterviewService {
                 .build();
     }
     
-    public InterviewDtos.ChatMessageResponse postMessage(String sessionId, InterviewDtos.UserMessageRequest request) 
-            throws ExecutionException, InterruptedException {
+    /**
+     * Обработать ответ пользователя и получить следующий вопрос.
+     * Пайплайн не блокирует поток запроса: сохранение ответа и чтение истории идут параллельно,
+     * вызов Gemini неблокирующий, финальные записи тоже выполняются параллельно.
+     */
+    public Mono<InterviewDtos.ChatMessageResponse> postMessage(String sessionId, InterviewDtos.UserMessageRequest request) {
         log.info("Processing message for session: {}", sessionId);
         
         // Get session to check current question number
-        Firestore dbFirestore = FirestoreClient.getFirestore();
-        InterviewSession session = dbFirestore.collection("interview_sessions")
-                .document(sessionId)
-                .get()
-                .get()
-                .toObject(InterviewSession.class);
+        return findSessionAsync(sessionId)
+                .flatMap(session -> {
+                    if (isLastAnswer(session)) {
+                        return finishInterview(session, request);
+                    }
+                    return prepareTurn(session, request)
+                            .flatMap(turn -> generateNextResponse(turn)
+                                    .onErrorMap(e -> {
+                                        log.error("Error generating AI response", e);
+                                        return new RuntimeException("Failed to generate response: " + e.getMessage(), e);
+                                    })
+                                    .flatMap(aiResponseText -> completeTurn(turn, aiResponseText)));
+                });
+    }
 
-        if (session == null) {
-            throw new RuntimeException("Interview session not found");
-        }
+    /**
+     * То же, что postMessage, но следующий вопрос отдается клиенту по мере генерации (SSE).
+     * События: "delta" - очередной фрагмент текста, "done" - итоговый ChatMessageResponse
+     * после сохранения полного текста вопроса.
+     */
+    public Flux<ServerSentEvent<Object>> streamMessage(String sessionId, InterviewDtos.UserMessageRequest request) {
+        log.info("Streaming message for session: {}", sessionId);
+        
+        return findSessionAsync(sessionId)
+                .flatMapMany(session -> {
+                    if (isLastAnswer(session)) {
+                        return finishInterview(session, request).map(this::doneEvent).flux();
+                    }
+                    return prepareTurn(session, request).flatMapMany(turn -> {
+                        StringBuilder aiResponseText = new StringBuilder();
+                        return geminiService.streamNextResponse(
+                                        session,
+                                        turn.window().summary(),
+                                        turn.window().messages(),
+                                        turn.nextQuestionType(),
+                                        turn.nextQuestionNumber(),
+                                        TOTAL_QUESTIONS)
+                                .doOnNext(aiResponseText::append)
+                                .map(delta -> ServerSentEvent.<Object>builder(delta).event("delta").build())
+                                .concatWith(Mono.defer(() -> {
+                                    if (aiResponseText.length() == 0) {
+                                        return Mono.error(new RuntimeException("No response from Gemini API"));
+                                    }
+                                    return completeTurn(turn, aiResponseText.toString()).map(this::doneEvent);
+                                }));
+                    });
+                });
+    }
 
-        // Save user message
-        ChatMessage userMessage = ChatMessage.builder()
-                .sessionId(sessionId)
-                .role(ChatMessage.MessageRole.USER)
-                .content(request.getAnswer())
-                .timestamp(System.currentTimeMillis())
-                .build();
-        messageRepository.save(userMessage);
-        log.info("User message saved");
+    private Mono<InterviewSession> findSessionAsync(String sessionId) {
+        return Mono.fromFuture(() -> sessionRepository.findByIdAsync(sessionId))
+                .switchIfEmpty(Mono.error(() -> new RuntimeException("Interview session not found")));
+    }
 
-        // Увеличиваем номер вопроса
-        int nextQuestionNumber = session.getCurrentQuestionNumber() + 1;
+    private boolean isLastAnswer(InterviewSession session) {
+        return session.getCurrentQuestionNumber() + 1 > TOTAL_QUESTIONS;
+    }
 
-        // Проверяем, не закончилось ли интервью
-        if (nextQuestionNumber > TOTAL_QUESTIONS) {
-            log.info("Interview completed - reached {} questions", TOTAL_QUESTIONS);
-            session.setStatus(InterviewSession.InterviewStatus.COMPLETED);
-            sessionRepository.save(session);
-            
-            return InterviewDtos.ChatMessageResponse.builder()
-                    .role(ChatMessage.MessageRole.MODEL)
-                    .content("Thank you for completing the interview! You answered all 20 questions.")
-                    .isInterviewComplete(true)
-                    .currentQuestionNumber(TOTAL_QUESTIONS)
-                    .totalQuestions(TOTAL_QUESTIONS)
-                    .build();
-        }
+    /**
+     * Последний ответ: сохраняем его и закрываем интервью
+     */
+    private Mono<InterviewDtos.ChatMessageResponse> finishInterview(InterviewSession session,
+                                                                    InterviewDtos.UserMessageRequest request) {
+        log.info("Interview completed - reached {} questions", TOTAL_QUESTIONS);
+        ChatMessage userMessage = buildUserMessage(session, request);
+        session.setStatus(InterviewSession.InterviewStatus.COMPLETED);
+        
+        return Mono.zip(
+                        saveUserMessage(userMessage),
+                        chatHistory(session),
+                        Mono.fromFuture(() -> sessionRepository.updateFieldsAsync(
+                                session.getId(), Map.of("status", session.getStatus().name()))).thenReturn(true))
+                .doOnNext(tuple -> {
+                    conversationCache.evict(session.getId());
+                    geminiService.releaseInterviewPrefix(session.getId());
+                    analyticsService.gradeAnswerInBackground(session, findQuestion(tuple.getT2(), userMessage), userMessage);
+                })
+                .thenReturn(InterviewDtos.ChatMessageResponse.builder()
+                        .role(ChatMessage.MessageRole.MODEL)
+                        .content("Thank you for completing the interview! You answered all 20 questions.")
+                        .isInterviewComplete(true)
+                        .currentQuestionNumber(TOTAL_QUESTIONS)
+                        .totalQuestions(TOTAL_QUESTIONS)
+                        .build());
+    }
 
-        // Определяем тип следующего вопроса
+    /**
+     * Сохранить ответ пользователя и параллельно прочитать историю для следующего вопроса
+     */
+    private Mono<Turn> prepareTurn(InterviewSession session, InterviewDtos.UserMessageRequest request) {
+        ChatMessage userMessage = buildUserMessage(session, request);
+        
+        // Увеличиваем номер вопроса и определяем тип следующего вопроса
+        int nextQuestionNumber = session.getCurrentQuestionNumber() + 1;
         ChatMessage.QuestionType nextQuestionType = determineQuestionType(nextQuestionNumber);
 
-        // Get chat history
-        List<ChatMessage> chatHistory = messageRepository.findBySessionIdOrderByTimestampAsc(sessionId);
-        log.info("Retrieved {} messages from history", chatHistory.size());
+        return Mono.zip(saveUserMessage(userMessage), chatHistory(session))
+                .map(tuple -> {
+                    analyticsService.gradeAnswerInBackground(session, findQuestion(tuple.getT2(), tuple.getT1()), tuple.getT1());
+                    List<ChatMessage> history = appendMessage(tuple.getT2(), tuple.getT1());
+                    conversationCache.put(session.getId(), history);
+                    ConversationContextManager.ConversationWindow window = contextManager.window(session, history);
+                    log.info("Retrieved {} messages from history, sending {} (summary: {})",
+                            history.size(), window.messages().size(), window.summary() != null);
+                    return new Turn(session, history, window, nextQuestionType, nextQuestionNumber);
+                });
+    }
 
-        // Generate AI response
-        String aiResponseText;
-        try {
-            aiResponseText = geminiService.generateNextResponse(
-                chatHistory, 
-                session.getLanguage(),
-                nextQuestionType,
-                nextQuestionNumber,
+    private Mono<String> generateNextResponse(Turn turn) {
+        return geminiService.generateNextResponse(
+                turn.session(),
+                turn.window().summary(),
+                turn.window().messages(),
+                turn.nextQuestionType(),
+                turn.nextQuestionNumber(),
                 TOTAL_QUESTIONS
-            ).block();
-            log.info("AI response generated");
-        } catch (Exception e) {
-            log.error("Error generating AI response", e);
-            throw new RuntimeException("Failed to generate response: " + e.getMessage(), e);
-        }
+        );
+    }
 
-        // Save AI message
+    /**
+     * Сохранить вопрос AI и обновить номер вопроса в сессии (записи идут параллельно)
+     */
+    private Mono<InterviewDtos.ChatMessageResponse> completeTurn(Turn turn, String aiResponseText) {
+        log.info("AI response generated");
+        InterviewSession session = turn.session();
+        
         ChatMessage aiMessage = ChatMessage.builder()
-                .sessionId(sessionId)
+                .sessionId(session.getId())
                 .role(ChatMessage.MessageRole.MODEL)
                 .content(aiResponseText)
-                .questionType(nextQuestionType)
-                .questionNumber(nextQuestionNumber)
+                .questionType(turn.nextQuestionType())
+                .questionNumber(turn.nextQuestionNumber())
                 .timestamp(System.currentTimeMillis())
                 .build();
-        messageRepository.save(aiMessage);
-        log.info("AI message saved");
-
-        // Update session with new question number
-        session.setCurrentQuestionNumber(nextQuestionNumber);
-        sessionRepository.save(session);
         
-        return InterviewDtos.ChatMessageResponse.builder()
-                .role(aiMessage.getRole())
-                .content(aiMessage.getContent())
-                .nextQuestion(aiMessage.getContent())
-                .questionType(nextQuestionType.name())
-                .currentQuestionNumber(nextQuestionNumber)
-                .totalQuestions(TOTAL_QUESTIONS)
-                .isInterviewComplete(false)
+        // Save AI message and update session with new question number
+        // (только поле номера - документ целиком не перезаписывается, чтобы не затереть сводку истории)
+        session.setCurrentQuestionNumber(turn.nextQuestionNumber());
+        return Mono.when(
+                        Mono.fromFuture(() -> messageRepository.saveAsync(aiMessage)),
+                        Mono.fromFuture(() -> sessionRepository.updateFieldsAsync(
+                                session.getId(), Map.of("currentQuestionNumber", turn.nextQuestionNumber()))))
+                .doOnSuccess(done -> {
+                    log.info("AI message saved");
+                    conversationCache.append(session.getId(), aiMessage);
+                    contextManager.refreshSummaryInBackground(session, turn.history(), turn.window());
+                })
+                .thenReturn(InterviewDtos.ChatMessageResponse.builder()
+                        .role(aiMessage.getRole())
+                        .content(aiMessage.getContent())
+                        .nextQuestion(aiMessage.getContent())
+                        .questionType(turn.nextQuestionType().name())
+                        .currentQuestionNumber(turn.nextQuestionNumber())
+                        .totalQuestions(TOTAL_QUESTIONS)
+                        .isInterviewComplete(false)
+                        .build());
+    }
+
+    /**
+     * ID резервируем заранее, чтобы не задвоить сообщение, если запрос истории его уже увидит
+     */
+    private ChatMessage buildUserMessage(InterviewSession session, InterviewDtos.UserMessageRequest request) {
+        return ChatMessage.builder()
+                .id(messageRepository.nextId())
+                .sessionId(session.getId())
+                .role(ChatMessage.MessageRole.USER)
+                .content(request.getAnswer())
+                .questionNumber(session.getCurrentQuestionNumber())
+                .timestamp(System.currentTimeMillis())
                 .build();
     }
 
+    /**
+     * История из кеша; при промахе (перезапуск, ход на другом узле) - из Firestore параллельно с сохранением ответа
+     */
+    private Mono<List<ChatMessage>> chatHistory(InterviewSession session) {
+        return Mono.justOrEmpty(conversationCache.get(session))
+                .switchIfEmpty(Mono.fromFuture(
+                        () -> messageRepository.findBySessionIdOrderByTimestampAscAsync(session.getId())));
+    }
+
+    /**
+     * Вопрос, на который дан ответ: последнее сообщение AI с тем же номером
+     */
+    private ChatMessage findQuestion(List<ChatMessage> history, ChatMessage answer) {
+        for (int i = history.size() - 1; i >= 0; i--) {
+            ChatMessage message = history.get(i);
+            if (message.getRole() == ChatMessage.MessageRole.MODEL
+                    && Objects.equals(message.getQuestionNumber(), answer.getQuestionNumber())) {
+                return message;
+            }
+        }
+        return null;
+    }
+
+    private Mono<ChatMessage> saveUserMessage(ChatMessage userMessage) {
+        return Mono.fromFuture(() -> messageRepository.saveAsync(userMessage))
+                .doOnNext(saved -> log.info("User message saved"));
+    }
+
+    private ServerSentEvent<Object> doneEvent(InterviewDtos.ChatMessageResponse response) {
+        return ServerSentEvent.<Object>builder(response).event("done").build();
+    }
+
+    /**
+     * Состояние хода между сохранением ответа и генерацией следующего вопроса
+     */
+    private record Turn(InterviewSession session,
+                        List<ChatMessage> history,
+                        ConversationContextManager.ConversationWindow window,
+                        ChatMessage.QuestionType nextQuestionType,
+                        int nextQuestionNumber) {
+    }
+
+    /**
+     * История + только что сохраненное сообщение (без дубля, если запрос его уже вернул)
+     */
+    private List<ChatMessage> appendMessage(List<ChatMessage> history, ChatMessage message) {
+        List<ChatMessage> result = new ArrayList<>(history.size() + 1);
+        for (ChatMessage existing : history) {
+            if (!message.getId().equals(existing.getId())) {
+                result.add(existing);
+            }
+        }
+        result.add(message);
+        return result;
+    }
+
     /**
      * Определяет тип вопроса в зависимости от номера
      */
@@ -214,12 +367,7 @@ public class InterviewService {
         
         User currentUser = getCurrentUser();
         
-        Firestore dbFirestore = FirestoreClient.getFirestore();
-        ApiFuture<QuerySnapshot> future = dbFirestore.collection("interview_sessions")
-                .whereEqualTo("userId", currentUser.getId())
-                .get();
-        
-        List<InterviewSession> sessions = future.get().toObjects(InterviewSession.class);
+        List<InterviewSession> sessions = sessionRepository.findByUserIdAsync(currentUser.getId()).get();
         log.info("Found {} interview sessions", sessions.size());
         
         return sessions.stream()
@@ -245,14 +393,15 @@ public class InterviewService {
             throws ExecutionException, InterruptedException {
         log.info("Fetching interview details for: {}", interviewId);
         
-        User currentUser = getCurrentUser();
+        // Пользователь, сессия и сообщения не зависят друг от друга - читаем параллельно
+        CompletableFuture<Optional<User>> userFuture = findCurrentUserAsync();
+        CompletableFuture<InterviewSession> sessionFuture = sessionRepository.findByIdAsync(interviewId);
+        CompletableFuture<List<ChatMessage>> messagesFuture =
+                messageRepository.findBySessionIdOrderByTimestampAscAsync(interviewId);
+        CompletableFuture.allOf(userFuture, sessionFuture, messagesFuture).get();
         
-        Firestore dbFirestore = FirestoreClient.getFirestore();
-        InterviewSession session = dbFirestore.collection("interview_sessions")
-                .document(interviewId)
-                .get()
-                .get()
-                .toObject(InterviewSession.class);
+        User currentUser = requireUser(userFuture.join());
+        InterviewSession session = sessionFuture.join();
         
         if (session == null) {
             throw new RuntimeException("Interview not found");
@@ -262,7 +411,7 @@ public class InterviewService {
             throw new RuntimeException("Unauthorized access to interview");
         }
         
-        List<ChatMessage> messages = messageRepository.findBySessionIdOrderByTimestampAsc(interviewId);
+        List<ChatMessage> messages = messagesFuture.join();
         log.info("Found {} messages for interview", messages.size());
         
         List<InterviewDtos.ConversationMessage> conversation = messages.stream()
@@ -293,14 +442,12 @@ public class InterviewService {
             throws ExecutionException, InterruptedException {
         log.info("Completing interview: {}", interviewId);
         
-        User currentUser = getCurrentUser();
+        CompletableFuture<Optional<User>> userFuture = findCurrentUserAsync();
+        CompletableFuture<InterviewSession> sessionFuture = sessionRepository.findByIdAsync(interviewId);
+        CompletableFuture.allOf(userFuture, sessionFuture).get();
         
-        Firestore dbFirestore = FirestoreClient.getFirestore();
-        InterviewSession session = dbFirestore.collection("interview_sessions")
-                .document(interviewId)
-                .get()
-                .get()
-                .toObject(InterviewSession.class);
+        User currentUser = requireUser(userFuture.join());
+        InterviewSession session = sessionFuture.join();
         
         if (session == null) {
             throw new RuntimeException("Interview not found");
@@ -312,14 +459,27 @@ public class InterviewService {
         
         session.setStatus(InterviewSession.InterviewStatus.COMPLETED);
         sessionRepository.save(session);
+        conversationCache.evict(interviewId);
+        geminiService.releaseInterviewPrefix(interviewId);
         
         log.info("Interview {} marked as completed", interviewId);
     }
 
     private User getCurrentUser() throws ExecutionException, InterruptedException {
+        return requireUser(findCurrentUserAsync().get());
+    }
+
+    /**
+     * Email берется из SecurityContext в потоке запроса, сам запрос в Firestore - асинхронный
+     */
+    private CompletableFuture<Optional<User>> findCurrentUserAsync() {
         String userEmail = SecurityContextHolder.getContext().getAuthentication().getName();
         log.info("Getting current user: {}", userEmail);
-        return userRepository.findByEmail(userEmail)
-                .orElseThrow(() -> new RuntimeException("Authenticated user not found: " + userEmail));
+        return userRepository.findByEmailAsync(userEmail);
+    }
+
+    private User requireUser(Optional<User> user) {
+        return user.orElseThrow(() -> new RuntimeException("Authenticated user not found: "
+                + SecurityContextHolder.getContext().getAuthentication().getName()));
     }
 }
\ No newline at end of file
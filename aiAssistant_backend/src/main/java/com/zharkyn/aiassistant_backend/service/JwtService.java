@@ -1,45 +1,123 @@
 package com.zharkyn.aiassistant_backend.service;
 
+import com.zharkyn.aiassistant_backend.model.User;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
 import java.security.Key;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 public class JwtService {
 
+    public static final String CLAIM_USER_ID = "uid";
+    public static final String CLAIM_ROLES = "roles";
+    public static final String CLAIM_CREDENTIALS_VERSION = "cv";
+
     @Value("${jwt.secret}")
     private String jwtSecret;
 
     @Value("${jwt.expiration-ms}")
     private long jwtExpiration;
 
+    // Stateless режим: фильтр доверяет подписанным claims и не читает пользователя из Firestore
+    @Value("${jwt.stateless.enabled:false}")
+    private boolean statelessEnabled;
+
+    // Ключ и парсер потокобезопасны - создаются один раз при старте
+    private Key signingKey;
+    private JwtParser jwtParser;
+
+    @PostConstruct
+    void init() {
+        byte[] keyBytes = Decoders.BASE64.decode(jwtSecret);
+        this.signingKey = Keys.hmacShaKeyFor(keyBytes);
+        this.jwtParser = Jwts.parserBuilder()
+                .setSigningKey(signingKey)
+                .build();
+    }
+
+    /**
+     * Разобрать и проверить подпись токена (один раз на запрос).
+     * Бросает JwtException, если токен поврежден или просрочен.
+     */
+    public Claims parseToken(String token) {
+        return jwtParser.parseClaimsJws(token).getBody();
+    }
+
     public String extractUserName(String token) {
-        return extractClaim(token, Claims::getSubject);
+        return parseToken(token).getSubject();
     }
 
     public String generateToken(UserDetails userDetails) {
-        return generateToken(new HashMap<>(), userDetails);
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(CLAIM_ROLES, userDetails.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .collect(Collectors.toList()));
+        if (userDetails instanceof User user) {
+            claims.put(CLAIM_USER_ID, user.getId());
+            claims.put(CLAIM_CREDENTIALS_VERSION, credentialsVersionOf(user));
+        }
+        return generateToken(claims, userDetails);
     }
 
     public boolean isTokenValid(String token, UserDetails userDetails) {
-        final String userName = extractUserName(token);
-        return (userName.equals(userDetails.getUsername())) && !isTokenExpired(token);
+        return isTokenValid(parseToken(token), userDetails);
     }
 
-    private <T> T extractClaim(String token, Function<Claims, T> claimsResolvers) {
-        final Claims claims = extractAllClaims(token);
-        return claimsResolvers.apply(claims);
+    public boolean isTokenValid(Claims claims, UserDetails userDetails) {
+        return userDetails.getUsername().equals(claims.getSubject())
+                && !isTokenExpired(claims)
+                && !isCredentialsVersionStale(claims, userDetails);
+    }
+
+    public boolean isStatelessEnabled() {
+        return statelessEnabled;
+    }
+
+    /**
+     * Построить принципала только из проверенных claims (без запроса в Firestore).
+     * Возвращает null, если токен выпущен до появления stateless claims.
+     */
+    public User extractStatelessPrincipal(Claims claims) {
+        String userId = claims.get(CLAIM_USER_ID, String.class);
+        if (userId == null || claims.getSubject() == null) {
+            return null;
+        }
+        Number credentialsVersion = claims.get(CLAIM_CREDENTIALS_VERSION, Number.class);
+        return User.builder()
+                .id(userId)
+                .email(claims.getSubject())
+                .credentialsVersion(credentialsVersion != null ? credentialsVersion.longValue() : 0L)
+                .build();
+    }
+
+    /**
+     * Роли из claim "roles" (для stateless режима)
+     */
+    public Collection<? extends GrantedAuthority> extractAuthorities(Claims claims) {
+        List<?> roles = claims.get(CLAIM_ROLES, List.class);
+        if (roles == null) {
+            return List.of();
+        }
+        return roles.stream()
+                .map(role -> new SimpleGrantedAuthority(String.valueOf(role)))
+                .collect(Collectors.toList());
     }
 
     private String generateToken(Map<String, Object> extraClaims, UserDetails userDetails) {
@@ -48,28 +126,24 @@ public class JwtService {
                 .setSubject(userDetails.getUsername())
                 .setIssuedAt(new Date(System.currentTimeMillis()))
                 .setExpiration(new Date(System.currentTimeMillis() + jwtExpiration))
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
-    private boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
-    }
-
-    private Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
+    private boolean isTokenExpired(Claims claims) {
+        return claims.getExpiration().before(new Date());
     }
 
-    private Claims extractAllClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+    // Токен, выпущенный до смены пароля, больше не принимается
+    private boolean isCredentialsVersionStale(Claims claims, UserDetails userDetails) {
+        Number tokenVersion = claims.get(CLAIM_CREDENTIALS_VERSION, Number.class);
+        if (tokenVersion == null || !(userDetails instanceof User user)) {
+            return false;
+        }
+        return tokenVersion.longValue() < credentialsVersionOf(user);
     }
 
-    private Key getSigningKey() {
-        byte[] keyBytes = Decoders.BASE64.decode(jwtSecret);
-        return Keys.hmacShaKeyFor(keyBytes);
+    private static long credentialsVersionOf(User user) {
+        return user.getCredentialsVersion() != null ? user.getCredentialsVersion() : 0L;
     }
 }
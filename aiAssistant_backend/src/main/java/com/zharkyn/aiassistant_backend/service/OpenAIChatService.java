@@ -1,43 +1,57 @@
 package com.zharkyn.aiassistant_backend.service;
 
-import lombok.RequiredArgsConstructor;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.client.MultipartBodyBuilder;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.BodyInserters;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import jakarta.annotation.PostConstruct;
 
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.util.Map;
 
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class OpenAIChatService {
 
-    private final WebClient.Builder webClientBuilder;
+    private static final String STREAM_DONE = "[DONE]";
+
+    // Общий клиент с пулом соединений (см. WebClientConfig), baseUrl = openai.api.base
+    private final WebClient webClient;
+    private final JsonFactory jsonFactory = new JsonFactory();
 
     @Value("${openai.api.key:}")
     private String apiKeyProp;
 
     private String apiKey = "sk-proj-REPLACE_WITH_YOUR_KEY";
 
-    @Value("${openai.api.base:https://api.openai.com}")
-    private String apiBase;
-
     @Value("${openai.chat.model:gpt-4o-mini}")
     private String chatModel;
 
     @Value("${openai.stt.model:whisper-1}")
     private String sttModel;
 
+    public OpenAIChatService(@Qualifier("openAiWebClient") WebClient webClient) {
+        this.webClient = webClient;
+    }
+
     @PostConstruct
     void initApiKey() {
         if (apiKeyProp != null && !apiKeyProp.isBlank()) {
@@ -52,17 +66,26 @@ public class OpenAIChatService {
     }
 
     public String transcribeAudio(byte[] audio) {
-        WebClient client = webClientBuilder.baseUrl(apiBase).build();
+        return transcribeAudio(new ByteArrayResource(audio), "audio/webm");
+    }
 
+    /**
+     * Транскрибация файла с диска: тело запроса читается из файла буферами,
+     * запись целиком в память не загружается
+     */
+    public String transcribeAudio(Path audioFile, String contentType) {
+        return transcribeAudio(new FileSystemResource(audioFile), contentType);
+    }
+
+    private String transcribeAudio(Resource audio, String contentType) {
+        MediaType mediaType = MediaType.parseMediaType(contentType);
         MultipartBodyBuilder mb = new MultipartBodyBuilder();
-        mb.part("file", new ByteArrayResource(audio) {
-            @Override
-            public String getFilename() { return "audio.webm"; }
-        }).contentType(MediaType.parseMediaType("audio/webm"));
+        mb.part("file", audio).filename("audio." + mediaType.getSubtype())
+                .contentType(mediaType);
         mb.part("model", sttModel);
         mb.part("response_format", "text");
 
-        String text = client.post()
+        String text = webClient.post()
                 .uri("/v1/audio/transcriptions")
                 .header(HttpHeaders.AUTHORIZATION, "Bearer " + apiKey)
                 .contentType(MediaType.MULTIPART_FORM_DATA)
@@ -83,8 +106,70 @@ public class OpenAIChatService {
                                        String jobDescription,
                                        int questionNumber,
                                        String lastAnswer) {
-        WebClient client = webClientBuilder.baseUrl(apiBase).build();
+        Map<String, Object> body = buildNextQuestionBody(
+                positionTitle, companyName, jobDescription, questionNumber, lastAnswer, false);
+
+        String response = webClient.post()
+                .uri("/v1/chat/completions")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + apiKey)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(body)
+                .retrieve()
+                .bodyToMono(Map.class)
+                .timeout(Duration.ofSeconds(60))
+                .map(m -> {
+                    try {
+                        var choices = (java.util.List<Map<String, Object>>) m.get("choices");
+                        if (choices == null || choices.isEmpty()) return "";
+                        var msg = (Map<String, Object>) choices.get(0).get("message");
+                        return msg != null ? String.valueOf(msg.get("content")) : "";
+                    } catch (Exception e) {
+                        log.error("Error parsing chat response: {}", m, e);
+                        return "";
+                    }
+                })
+                .block();
 
+        if (response == null || response.isBlank()) {
+            throw new RuntimeException("Empty chat response");
+        }
+        return response;
+    }
+
+    /**
+     * Потоковая версия generateNextQuestion (stream=true).
+     * SSE-чанки разбираются Jackson JsonParser'ом без биндинга в Map, наружу идут только дельты текста.
+     */
+    public Flux<String> streamNextQuestion(String positionTitle,
+                                           String companyName,
+                                           String jobDescription,
+                                           int questionNumber,
+                                           String lastAnswer) {
+        Map<String, Object> body = buildNextQuestionBody(
+                positionTitle, companyName, jobDescription, questionNumber, lastAnswer, true);
+
+        return webClient.post()
+                .uri("/v1/chat/completions")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + apiKey)
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .bodyValue(body)
+                .retrieve()
+                .bodyToFlux(new ParameterizedTypeReference<ServerSentEvent<String>>() {})
+                .timeout(Duration.ofSeconds(60))
+                .map(ServerSentEvent::data)
+                .takeWhile(data -> !STREAM_DONE.equals(data))
+                .mapNotNull(this::extractDelta)
+                .filter(delta -> !delta.isEmpty())
+                .doOnError(error -> log.error("Error streaming chat completion", error));
+    }
+
+    private Map<String, Object> buildNextQuestionBody(String positionTitle,
+                                                      String companyName,
+                                                      String jobDescription,
+                                                      int questionNumber,
+                                                      String lastAnswer,
+                                                      boolean stream) {
         String typeHint;
         if (questionNumber >= 1 && questionNumber <= 5) typeHint = "Background";
         else if (questionNumber >= 6 && questionNumber <= 13) typeHint = "Situational";
@@ -107,46 +192,58 @@ public class OpenAIChatService {
                         "My last answer was: '" + lastAnswer + "'. Based on it, ask the next question." 
         );
 
-        Map<String, Object> body = Map.of(
+        return Map.of(
                 "model", chatModel,
+                "stream", stream,
                 "messages", new Object[]{
                         Map.of("role", "system", "content", instruction),
                         Map.of("role", "user", "content", userPrompt)
                 }
         );
+    }
 
-        String response = client.post()
-                .uri("/v1/chat/completions")
-                .header(HttpHeaders.AUTHORIZATION, "Bearer " + apiKey)
-                .contentType(MediaType.APPLICATION_JSON)
-                .bodyValue(body)
-                .retrieve()
-                .bodyToMono(Map.class)
-                .timeout(Duration.ofSeconds(60))
-                .map(m -> {
-                    try {
-                        var choices = (java.util.List<Map<String, Object>>) m.get("choices");
-                        if (choices == null || choices.isEmpty()) return "";
-                        var msg = (Map<String, Object>) choices.get(0).get("message");
-                        return msg != null ? String.valueOf(msg.get("content")) : "";
-                    } catch (Exception e) {
-                        log.error("Error parsing chat response: {}", m, e);
-                        return "";
+    /**
+     * choices[0].delta.content из чанка; null, если в чанке нет текста (роль, finish_reason и т.п.)
+     */
+    private String extractDelta(String chunk) {
+        if (chunk == null || chunk.isBlank()) {
+            return null;
+        }
+        try (JsonParser parser = jsonFactory.createParser(chunk)) {
+            int depth = 0;
+            int deltaDepth = -1;
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                switch (token) {
+                    case START_OBJECT, START_ARRAY -> depth++;
+                    case END_OBJECT, END_ARRAY -> {
+                        if (depth == deltaDepth) {
+                            deltaDepth = -1;
+                        }
+                        depth--;
                     }
-                })
-                .block();
-
-        if (response == null || response.isBlank()) {
-            throw new RuntimeException("Empty chat response");
+                    case FIELD_NAME -> {
+                        String name = parser.getCurrentName();
+                        if (deltaDepth < 0 && "delta".equals(name)) {
+                            deltaDepth = depth + 1;
+                        } else if (depth == deltaDepth && "content".equals(name)) {
+                            return parser.nextToken() == JsonToken.VALUE_STRING ? parser.getText() : null;
+                        }
+                    }
+                    default -> {
+                    }
+                }
+            }
+            return null;
+        } catch (IOException e) {
+            log.warn("Malformed chat completion chunk: {}", chunk, e);
+            return null;
         }
-        return response;
     }
 
     private static String nullToEmpty(String s) { return s == null ? "" : s; }
 
     private String chatRespond(String userText) {
-        WebClient client = webClientBuilder.baseUrl(apiBase).build();
-
         Map<String, Object> body = Map.of(
                 "model", chatModel,
                 "messages", new Object[]{
@@ -155,7 +252,7 @@ public class OpenAIChatService {
                 }
         );
 
-        String response = client.post()
+        String response = webClient.post()
                 .uri("/v1/chat/completions")
                 .header(HttpHeaders.AUTHORIZATION, "Bearer " + apiKey)
                 .contentType(MediaType.APPLICATION_JSON)
@@ -2,6 +2,8 @@ package com.zharkyn.aiassistant_backend.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpHeaders;
@@ -9,43 +11,255 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.socket.*;
 import org.springframework.web.socket.client.WebSocketClient;
 import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
 
-import javax.annotation.PostConstruct;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
 import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * Клиент OpenAI Realtime API с пулом постоянных WebSocket соединений.
+ *
+ * Соединения переиспользуются между запросами (без повторного WS/TLS handshake),
+ * состояние ответа хранится отдельно для каждого запроса, шаги commit/response
+ * ждут событий сервера вместо Thread.sleep. Если все соединения заняты, запрос
+ * ждет не дольше openai.realtime.pool.acquire-timeout-ms и получает ошибку.
+ *
+ * Потоковые сессии живут все интервью, поэтому идут мимо пула: каждая открывает собственное
+ * соединение и закрывает его в close(), их число ограничено отдельно (openai.realtime.max-streams).
+ */
 @Service
 @Slf4j
 public class OpenAIRealtimeService {
 
-    @Value("${openai.api.key}")
-    private String apiKey;
+    private static final String EMPTY_RESPONSE = "Извините, не удалось получить ответ от AI.";
+    // Аудио отправляется частями, чтобы не упираться в лимит размера одного WS сообщения
+    private static final int AUDIO_CHUNK_BYTES = 64 * 1024;
+    private static final int SEND_TIME_LIMIT_MS = 10_000;
+    private static final int SEND_BUFFER_LIMIT_BYTES = 1024 * 1024;
 
-    private WebSocketClient client;
-    private WebSocketSession session;
-    private CountDownLatch responseLatch;
-    private StringBuilder aiResponseText;
-    private List<String> audioDeltaList;
+    private final WebSocketClient client = new StandardWebSocketClient();
+    private final ObjectMapper objectMapper;
+    private final String apiKey;
+    private final URI realtimeUri;
+    private final long acquireTimeoutMs;
+    private final long responseTimeoutSeconds;
+    private final long maxLifeMs;
 
-    @PostConstruct
-    public void init() {
-        client = new StandardWebSocketClient();
+    private final Semaphore permits;
+    private final Semaphore streamPermits;
+    private final BlockingQueue<RealtimeConnection> idle = new LinkedBlockingQueue<>();
+
+    public OpenAIRealtimeService(ObjectMapper objectMapper,
+                                 @Value("${openai.api.key}") String apiKey,
+                                 @Value("${openai.realtime.url:wss://api.openai.com/v1/realtime}") String realtimeUrl,
+                                 @Value("${openai.realtime.model:gpt-4o-realtime-preview-2024-10-01}") String model,
+                                 @Value("${openai.realtime.pool.size:4}") int poolSize,
+                                 @Value("${openai.realtime.pool.acquire-timeout-ms:5000}") long acquireTimeoutMs,
+                                 @Value("${openai.realtime.pool.max-life-seconds:1500}") long maxLifeSeconds,
+                                 @Value("${openai.realtime.max-streams:32}") int maxStreams,
+                                 @Value("${openai.realtime.response-timeout-seconds:30}") long responseTimeoutSeconds) {
+        this.objectMapper = objectMapper;
+        this.apiKey = apiKey;
+        this.realtimeUri = URI.create(realtimeUrl + "?model=" + model);
+        this.permits = new Semaphore(poolSize, true);
+        this.streamPermits = new Semaphore(maxStreams, true);
+        this.acquireTimeoutMs = acquireTimeoutMs;
+        this.maxLifeMs = TimeUnit.SECONDS.toMillis(maxLifeSeconds);
+        this.responseTimeoutSeconds = responseTimeoutSeconds;
+        log.info("Realtime pool: size={}, acquireTimeout={}ms, maxLife={}s, maxStreams={}",
+                poolSize, acquireTimeoutMs, maxLifeSeconds, maxStreams);
     }
 
     public String sendAudioAndGetResponse(byte[] audioData) throws IOException {
-        aiResponseText = new StringBuilder();
-        audioDeltaList = new ArrayList<>();
-        responseLatch = new CountDownLatch(1);
+        log.info("Sending audio data of size: {} bytes", audioData.length);
+        return sendAudioAndGetResponse(new ByteArrayInputStream(audioData));
+    }
+
+    /**
+     * Аудио читается из потока кусками AUDIO_CHUNK_BYTES, в памяти одновременно только один кусок
+     */
+    public String sendAudioAndGetResponse(InputStream audio) throws IOException {
+        RealtimeConnection connection = acquire();
+        boolean reusable = false;
+        try {
+            PendingResponse pending = connection.begin();
+
+            // Отправляем аудио через append
+            connection.appendAudio(audio);
+
+            // Коммитим буфер и ждем подтверждения от сервера
+            connection.send(objectMapper.createObjectNode().put("type", "input_audio_buffer.commit"));
+            await(pending.committed);
+            log.info("Audio buffer committed");
+
+            // Запрашиваем ответ
+            connection.requestResponse();
+            log.info("Response requested");
+
+            String response = await(pending.done);
+            log.info("Final AI response: {}", response);
+            reusable = true;
+
+            return response.isEmpty() ? EMPTY_RESPONSE : response;
+        } finally {
+            release(connection, reusable);
+        }
+    }
+
+    /**
+     * Открыть потоковую сессию (full-duplex): аудио добавляется по мере поступления,
+     * события ответа сразу передаются слушателю. Сессия открывает отдельное соединение вне пула
+     * (настройки instructions и транскрипции входа подстроены под конкретное интервью, переиспользовать
+     * его нельзя) и не занимает теплые соединения запрос/ответ на все время интервью.
+     */
+    public RealtimeStream openStream(String instructions, RealtimeListener listener) throws IOException {
+        acquirePermit(streamPermits, "Realtime stream limit reached");
+        RealtimeConnection connection = null;
+        try {
+            connection = connect();
+            connection.listener = listener;
+            ObjectNode sessionUpdate = objectMapper.createObjectNode().put("type", "session.update");
+            ObjectNode session = sessionUpdate.putObject("session");
+            session.put("instructions", instructions);
+            session.putObject("input_audio_transcription").put("model", "whisper-1");
+            connection.send(sessionUpdate);
+            return new RealtimeStream(connection);
+        } catch (IOException | RuntimeException e) {
+            if (connection != null) {
+                connection.close();
+            }
+            streamPermits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Слушатель событий потоковой сессии; вызывается из потока WebSocket клиента
+     */
+    public interface RealtimeListener {
+        default void onInputTranscript(String transcript) {
+        }
+
+        default void onTextDelta(String delta) {
+        }
+
+        default void onAudioDelta(String base64Audio) {
+        }
+
+        default void onResponseDone(String text) {
+        }
+
+        default void onError(String message) {
+        }
+    }
+
+    /**
+     * Потоковая сессия на собственном соединении
+     */
+    public final class RealtimeStream implements AutoCloseable {
+
+        private final RealtimeConnection connection;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private RealtimeStream(RealtimeConnection connection) {
+            this.connection = connection;
+        }
+
+        /**
+         * Добавить фрагмент PCM16 (24 kHz, mono) во входной буфер
+         */
+        public void appendAudio(byte[] pcm) throws IOException {
+            connection.appendAudio(pcm);
+        }
+
+        /**
+         * Закончить реплику пользователя и запросить ответ
+         */
+        public void commit() throws IOException {
+            connection.begin();
+            connection.send(objectMapper.createObjectNode().put("type", "input_audio_buffer.commit"));
+            connection.requestResponse();
+        }
+
+        public void cancel() throws IOException {
+            connection.send(objectMapper.createObjectNode().put("type", "response.cancel"));
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                connection.listener = null;
+                connection.close();
+                streamPermits.release();
+            }
+        }
+    }
+
+    /**
+     * Взять соединение из пула; при исчерпании пула ждем acquire-timeout-ms
+     */
+    private RealtimeConnection acquire() throws IOException {
+        acquirePermit(permits, "Realtime connection pool exhausted");
+
+        try {
+            RealtimeConnection connection;
+            while ((connection = idle.poll()) != null) {
+                if (connection.isUsable()) {
+                    return connection;
+                }
+                connection.close();
+            }
+            return connect();
+        } catch (IOException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private void acquirePermit(Semaphore semaphore, String exhaustedMessage) throws IOException {
+        try {
+            if (!semaphore.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new IOException(exhaustedMessage);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a Realtime connection", e);
+        }
+    }
+
+    /**
+     * Вернуть соединение в пул. Элементы диалога этого запроса удаляются,
+     * чтобы следующий запрос не видел чужой контекст.
+     */
+    private void release(RealtimeConnection connection, boolean reusable) {
+        try {
+            if (reusable && connection.isUsable() && connection.clearConversation()) {
+                idle.offer(connection);
+            } else {
+                connection.close();
+            }
+        } finally {
+            permits.release();
+        }
+    }
 
-        URI uri = URI.create("wss://api.openai.com/v1/realtime?model=gpt-4o-realtime-preview-2024-10-01");
-        
+    private RealtimeConnection connect() throws IOException {
         HttpHeaders headers = new HttpHeaders();
         headers.set("Authorization", "Bearer " + apiKey);
         headers.set("OpenAI-Beta", "realtime=v1");
@@ -53,54 +267,137 @@ public class OpenAIRealtimeService {
         WebSocketHttpHeaders wsHeaders = new WebSocketHttpHeaders(headers);
         wsHeaders.setSecWebSocketProtocol(Collections.singletonList("openai-realtime"));
 
+        RealtimeConnection connection = new RealtimeConnection();
         try {
-            session = client.execute(new RealtimeWebSocketHandler(), wsHeaders, uri).get();
-            
-            log.info("WebSocket connected, sending audio data of size: {} bytes", audioData.length);
-            
-            // Отправляем аудио через append
-            String base64Audio = Base64.getEncoder().encodeToString(audioData);
-            
-            String appendMessage = String.format(
-                "{\"type\":\"input_audio_buffer.append\",\"audio\":\"%s\"}", 
-                base64Audio
-            );
-            session.sendMessage(new TextMessage(appendMessage));
-            log.info("Audio data sent");
-            Thread.sleep(100);
-
-            // Коммитим буфер
-            String commitMessage = "{\"type\":\"input_audio_buffer.commit\"}";
-            session.sendMessage(new TextMessage(commitMessage));
-            log.info("Audio buffer committed");
-            Thread.sleep(100);
-
-            // Запрашиваем ответ
-            String responseMessage = "{\"type\":\"response.create\",\"response\":{\"modalities\":[\"text\",\"audio\"]}}";
-            session.sendMessage(new TextMessage(responseMessage));
-            log.info("Response requested");
+            WebSocketSession session = client.execute(connection, wsHeaders, realtimeUri)
+                    .get(responseTimeoutSeconds, TimeUnit.SECONDS);
+            connection.session = new ConcurrentWebSocketSessionDecorator(
+                    session, SEND_TIME_LIMIT_MS, SEND_BUFFER_LIMIT_BYTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while connecting to Realtime API", e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IOException("Failed to connect to Realtime API: " + e.getMessage(), e);
+        }
 
-            // Ждем ответа максимум 30 секунд
-            boolean completed = responseLatch.await(30, TimeUnit.SECONDS);
-            
-            if (!completed) {
-                log.warn("Response timeout - no response received within 30 seconds");
-                throw new IOException("Timeout waiting for AI response");
-            }
+        // Коммит и ответ запрашиваем сами - серверный VAD отключаем
+        ObjectNode sessionUpdate = objectMapper.createObjectNode().put("type", "session.update");
+        sessionUpdate.putObject("session").putNull("turn_detection");
+        connection.send(sessionUpdate);
 
-            String response = aiResponseText.toString();
-            log.info("Final AI response: {}", response);
-            
-            return response.isEmpty() ? "Извините, не удалось получить ответ от AI." : response;
+        log.info("Realtime WebSocket connection established");
+        return connection;
+    }
 
+    private <T> T await(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.get(responseTimeoutSeconds, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            log.warn("Response timeout - no response received within {} seconds", responseTimeoutSeconds);
+            throw new IOException("Timeout waiting for AI response", e);
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
-            log.error("Thread interrupted while waiting for response", e);
             throw new IOException("Interrupted while waiting for AI response", e);
-        } catch (Exception e) {
-            log.error("Error in WebSocket communication", e);
-            throw new IOException("Failed to get AI response: " + e.getMessage(), e);
-        } finally {
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to get AI response: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        RealtimeConnection connection;
+        while ((connection = idle.poll()) != null) {
+            connection.close();
+        }
+    }
+
+    /**
+     * Состояние одного запроса: накопленный текст и события, которых ждет вызывающий поток
+     */
+    private static class PendingResponse {
+        private final StringBuilder text = new StringBuilder();
+        private final CompletableFuture<Void> committed = new CompletableFuture<>();
+        private final CompletableFuture<String> done = new CompletableFuture<>();
+
+        private void fail(Throwable error) {
+            committed.completeExceptionally(error);
+            done.completeExceptionally(error);
+        }
+    }
+
+    /**
+     * Одно постоянное соединение с Realtime API. Обрабатывает события сервера
+     * и направляет их в PendingResponse текущего запроса.
+     */
+    private class RealtimeConnection extends TextWebSocketHandler {
+
+        private final long createdAt = System.currentTimeMillis();
+        private final List<String> itemIds = Collections.synchronizedList(new ArrayList<>());
+        private volatile WebSocketSession session;
+        private volatile PendingResponse pending;
+        private volatile RealtimeListener listener;
+        private volatile boolean broken;
+
+        private PendingResponse begin() {
+            PendingResponse response = new PendingResponse();
+            this.pending = response;
+            return response;
+        }
+
+        private boolean isUsable() {
+            return !broken && session != null && session.isOpen()
+                    && System.currentTimeMillis() - createdAt < maxLifeMs;
+        }
+
+        private void send(JsonNode event) throws IOException {
+            session.sendMessage(new TextMessage(objectMapper.writeValueAsString(event)));
+        }
+
+        private void appendAudio(byte[] audio) throws IOException {
+            appendAudio(new ByteArrayInputStream(audio));
+        }
+
+        private void appendAudio(InputStream audio) throws IOException {
+            byte[] chunk = new byte[AUDIO_CHUNK_BYTES];
+            int length;
+            while ((length = audio.readNBytes(chunk, 0, chunk.length)) > 0) {
+                byte[] payload = length == chunk.length ? chunk : Arrays.copyOf(chunk, length);
+                send(objectMapper.createObjectNode()
+                        .put("type", "input_audio_buffer.append")
+                        .put("audio", Base64.getEncoder().encodeToString(payload)));
+            }
+        }
+
+        private void requestResponse() throws IOException {
+            ObjectNode responseCreate = objectMapper.createObjectNode().put("type", "response.create");
+            responseCreate.putObject("response").putArray("modalities").add("text").add("audio");
+            send(responseCreate);
+        }
+
+        private boolean clearConversation() {
+            pending = null;
+            List<String> toDelete;
+            synchronized (itemIds) {
+                toDelete = new ArrayList<>(itemIds);
+                itemIds.clear();
+            }
+            try {
+                for (String itemId : toDelete) {
+                    deleteItem(itemId);
+                }
+                return true;
+            } catch (IOException e) {
+                log.warn("Failed to clear Realtime conversation, dropping connection", e);
+                return false;
+            }
+        }
+
+        private void deleteItem(String itemId) throws IOException {
+            send(objectMapper.createObjectNode().put("type", "conversation.item.delete").put("item_id", itemId));
+        }
+
+        private void close() {
+            broken = true;
             if (session != null && session.isOpen()) {
                 try {
                     session.close();
@@ -110,81 +407,77 @@ public class OpenAIRealtimeService {
                 }
             }
         }
-    }
-
-    private class RealtimeWebSocketHandler extends TextWebSocketHandler {
-
-        @Override
-        public void afterConnectionEstablished(WebSocketSession session) {
-            log.info("WebSocket connection established successfully");
-        }
 
         @Override
         protected void handleTextMessage(WebSocketSession session, TextMessage message) {
             String payload = message.getPayload();
-            
+
             try {
-                ObjectMapper mapper = new ObjectMapper();
-                JsonNode node = mapper.readTree(payload);
-                String type = node.get("type").asText();
+                JsonNode node = objectMapper.readTree(payload);
+                String type = node.path("type").asText();
+                PendingResponse response = pending;
+                RealtimeListener streamListener = listener;
 
                 log.debug("Received WebSocket message type: {}", type);
 
                 switch (type) {
-                    case "session.created":
-                        log.info("Session created successfully");
+                    case "conversation.item.created":
+                        String itemId = node.path("item").path("id").asText(null);
+                        if (itemId != null) {
+                            itemIds.add(itemId);
+                        }
                         break;
-                        
+
                     case "input_audio_buffer.committed":
-                        log.info("Audio buffer committed successfully");
-                        break;
-                        
-                    case "response.created":
-                        log.info("Response creation started");
+                        if (response != null) {
+                            response.committed.complete(null);
+                        }
                         break;
-                        
-                    case "response.output_item.added":
-                        log.info("Output item added");
-                        break;
-                        
-                    case "response.content_part.added":
-                        log.info("Content part added");
+
+                    case "conversation.item.input_audio_transcription.completed":
+                        if (streamListener != null) {
+                            streamListener.onInputTranscript(node.path("transcript").asText());
+                        }
                         break;
-                        
+
                     case "response.text.delta":
-                        String delta = node.get("delta").asText();
-                        aiResponseText.append(delta);
-                        log.debug("Text delta received: {}", delta);
-                        break;
-                        
-                    case "response.text.done":
-                        log.info("Text response completed");
+                    case "response.audio_transcript.delta":
+                        String delta = node.path("delta").asText();
+                        if (response != null) {
+                            response.text.append(delta);
+                        }
+                        if (streamListener != null) {
+                            streamListener.onTextDelta(delta);
+                        }
                         break;
-                        
+
                     case "response.audio.delta":
-                        String audioDelta = node.get("delta").asText();
-                        audioDeltaList.add(audioDelta);
-                        log.debug("Audio delta received");
-                        break;
-                        
-                    case "response.audio.done":
-                        log.info("Audio response completed");
+                        if (streamListener != null) {
+                            streamListener.onAudioDelta(node.path("delta").asText());
+                        }
                         break;
-                        
-                    case "response.output_item.done":
-                        log.info("Output item completed");
-                        break;
-                        
+
                     case "response.done":
                         log.info("Response generation completed successfully");
-                        responseLatch.countDown();
+                        if (response != null) {
+                            response.done.complete(response.text.toString());
+                            if (streamListener != null) {
+                                streamListener.onResponseDone(response.text.toString());
+                            }
+                        }
                         break;
-                        
+
                     case "error":
                         log.error("WebSocket error received: {}", payload);
-                        responseLatch.countDown();
+                        String errorMessage = node.path("error").path("message").asText("Realtime API error");
+                        if (response != null) {
+                            response.fail(new IOException(errorMessage));
+                        }
+                        if (streamListener != null) {
+                            streamListener.onError(errorMessage);
+                        }
                         break;
-                        
+
                     default:
                         log.debug("Unhandled message type: {}", type);
                 }
@@ -196,13 +489,29 @@ public class OpenAIRealtimeService {
         @Override
         public void handleTransportError(WebSocketSession session, Throwable exception) {
             log.error("WebSocket transport error occurred", exception);
-            responseLatch.countDown();
+            broken = true;
+            PendingResponse response = pending;
+            if (response != null) {
+                response.fail(exception);
+            }
+            RealtimeListener streamListener = listener;
+            if (streamListener != null) {
+                streamListener.onError("Realtime connection error");
+            }
         }
 
         @Override
         public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
             log.info("WebSocket connection closed with status: {}", status);
-            responseLatch.countDown();
+            broken = true;
+            PendingResponse response = pending;
+            if (response != null) {
+                response.fail(new IOException("Realtime connection closed: " + status));
+            }
+            RealtimeListener streamListener = listener;
+            if (streamListener != null) {
+                streamListener.onError("Realtime connection closed");
+            }
         }
     }
-}
\ No newline at end of file
+}
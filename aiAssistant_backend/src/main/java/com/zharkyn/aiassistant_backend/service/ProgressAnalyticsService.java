@@ -1,12 +1,11 @@
 package com.zharkyn.aiassistant_backend.service;
 
-import com.google.cloud.firestore.Firestore;
-import com.google.firebase.cloud.FirestoreClient;
 import com.zharkyn.aiassistant_backend.dto.AnalyticsDtos;
 import com.zharkyn.aiassistant_backend.model.InterviewEvaluation;
 import com.zharkyn.aiassistant_backend.model.InterviewSession;
 import com.zharkyn.aiassistant_backend.model.User;
 import com.zharkyn.aiassistant_backend.repository.InterviewEvaluationRepository;
+import com.zharkyn.aiassistant_backend.repository.InterviewSessionRepository;
 import com.zharkyn.aiassistant_backend.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -14,6 +13,7 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
 
@@ -27,6 +27,7 @@ public class ProgressAnalyticsService {
 
     private final UserRepository userRepository;
     private final InterviewEvaluationRepository evaluationRepository;
+    private final InterviewSessionRepository sessionRepository;
 
     /**
      * Получить общую аналитику прогресса
@@ -36,15 +37,9 @@ public class ProgressAnalyticsService {
         
         User currentUser = getCurrentUser();
         
-        Firestore dbFirestore = FirestoreClient.getFirestore();
-        
         // Получаем все интервью пользователя
-        List<InterviewSession> sessions = dbFirestore.collection("interview_sessions")
-                .whereEqualTo("userId", currentUser.getId())
-                .whereEqualTo("status", InterviewSession.InterviewStatus.COMPLETED)
-                .get()
-                .get()
-                .toObjects(InterviewSession.class);
+        List<InterviewSession> sessions = sessionRepository.findByUserIdAndStatusAsync(
+                currentUser.getId(), InterviewSession.InterviewStatus.COMPLETED).get();
         
         int totalInterviews = sessions.size();
         
@@ -58,10 +53,15 @@ public class ProgressAnalyticsService {
                     .build();
         }
         
-        // Собираем все оценки
+        // Собираем все оценки - запросы по интервью выполняются параллельно
+        List<CompletableFuture<List<InterviewEvaluation>>> evaluationFutures = sessions.stream()
+                .map(session -> evaluationRepository.findByInterviewIdAsync(session.getId()))
+                .collect(Collectors.toList());
+        CompletableFuture.allOf(evaluationFutures.toArray(new CompletableFuture[0])).get();
+        
         List<InterviewEvaluation> allEvaluations = new ArrayList<>();
-        for (InterviewSession session : sessions) {
-            allEvaluations.addAll(evaluationRepository.findByInterviewId(session.getId()));
+        for (CompletableFuture<List<InterviewEvaluation>> future : evaluationFutures) {
+            allEvaluations.addAll(future.join());
         }
         
         // Средний балл
@@ -0,0 +1,87 @@
+package com.zharkyn.aiassistant_backend.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.zharkyn.aiassistant_backend.dto.AnalyticsDtos;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+
+/**
+ * Локальный кеш готовых отчетов по завершенным интервью.
+ *
+ * Ключ - interviewId, запись хранит версию оценок, при которой отчет построен.
+ * Любая запись оценок по интервью увеличивает версию (invalidate), и отчет,
+ * построенный по старой версии, больше не отдается - даже если вычисление
+ * началось до записи и положило результат позже.
+ */
+@Slf4j
+@Service
+public class ReportCache {
+
+    // Версия заведомо устаревшего отчета: реальные версии начинаются с 0, put с ней ничего не кладет
+    public static final long STALE_VERSION = -1L;
+
+    private final Cache<String, CachedReport> reports;
+    // Версии живут дольше отчетов, иначе после вытеснения версия обнулится и старый отчет станет "свежим"
+    private final Cache<String, Long> versions;
+
+    public ReportCache(@Value("${analytics.report-cache.max-size:1000}") long maxSize,
+                       @Value("${analytics.report-cache.ttl-minutes:60}") long ttlMinutes,
+                       MeterRegistry meterRegistry) {
+        this.reports = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+                .recordStats()
+                .build();
+        this.versions = Caffeine.newBuilder()
+                .maximumSize(maxSize * 10)
+                .expireAfterAccess(Duration.ofMinutes(ttlMinutes * 2))
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, reports, "report_cache");
+        log.info("Report cache configured: maxSize={}, ttl={}m", maxSize, ttlMinutes);
+    }
+
+    /**
+     * Текущая версия оценок интервью - запомнить до чтения данных для отчета
+     */
+    public long version(String interviewId) {
+        return versions.get(interviewId, id -> 0L);
+    }
+
+    public AnalyticsDtos.InterviewReport get(String interviewId) {
+        CachedReport cached = reports.getIfPresent(interviewId);
+        if (cached == null || cached.version() != version(interviewId)) {
+            return null;
+        }
+        return cached.report();
+    }
+
+    /**
+     * Сохранить отчет, построенный по версии version; устаревший к этому моменту отчет не кладется
+     */
+    public void put(String interviewId, long version, AnalyticsDtos.InterviewReport report) {
+        if (version != version(interviewId)) {
+            log.debug("Skipping stale report for interview {}", interviewId);
+            return;
+        }
+        reports.put(interviewId, new CachedReport(version, report));
+    }
+
+    /**
+     * Вызывается при записи оценок по интервью; возвращает новую версию.
+     * Если до вызова версия была v и вернулось v + 1, других записей между ними не было.
+     */
+    public long invalidate(String interviewId) {
+        long version = versions.asMap().merge(interviewId, 1L, Long::sum);
+        reports.invalidate(interviewId);
+        return version;
+    }
+
+    private record CachedReport(long version, AnalyticsDtos.InterviewReport report) {
+    }
+}
@@ -0,0 +1,49 @@
+package com.zharkyn.aiassistant_backend.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Объединение одновременных запросов с одним ключом: пока вычисление по ключу идет,
+ * остальные вызывающие получают тот же future вместо повторного дорогого вызова.
+ * После завершения (успех или ошибка) ключ освобождается - результат здесь не кешируется.
+ */
+public final class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Запустить loader, если по ключу ничего не выполняется, иначе присоединиться к текущему вызову.
+     * Исключение, брошенное самим loader (до создания future), пробрасывается первому вызывающему.
+     */
+    public CompletableFuture<V> execute(K key, Supplier<CompletableFuture<V>> loader) {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            return existing;
+        }
+        CompletableFuture<V> source;
+        try {
+            source = loader.get();
+        } catch (RuntimeException e) {
+            inFlight.remove(key, flight);
+            flight.completeExceptionally(e);
+            throw e;
+        }
+        source.whenComplete((value, error) -> {
+            inFlight.remove(key, flight);
+            if (error != null) {
+                flight.completeExceptionally(error);
+            } else {
+                flight.complete(value);
+            }
+        });
+        return flight;
+    }
+
+    public int inFlightCount() {
+        return inFlight.size();
+    }
+}
@@ -0,0 +1,143 @@
+package com.zharkyn.aiassistant_backend.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Кеш транскрипций по содержимому записи (SHA-256 байтов аудио -> текст).
+ * Повторная отправка того же файла (ретрай клиента) не вызывает Whisper повторно,
+ * а одновременные запросы с одинаковым хешем объединяются в один вызов.
+ *
+ * Уровни: память (Caffeine, размер + TTL) и, если задан transcription.cache.disk-dir,
+ * каталог на диске, переживающий перезапуск (TTL по времени изменения файла).
+ * Пустые транскрипты (ошибка STT) не кешируются.
+ */
+@Slf4j
+@Service
+public class TranscriptionCache {
+
+    private static final int HASH_BUFFER_BYTES = 64 * 1024;
+
+    private final Cache<String, String> memory;
+    private final SingleFlight<String, String> inFlight = new SingleFlight<>();
+    private final Path diskDir;
+    private final Duration ttl;
+
+    public TranscriptionCache(@Value("${transcription.cache.max-size:5000}") long maxSize,
+                              @Value("${transcription.cache.ttl-minutes:1440}") long ttlMinutes,
+                              @Value("${transcription.cache.disk-dir:}") String diskDir,
+                              MeterRegistry meterRegistry) throws IOException {
+        this.ttl = Duration.ofMinutes(ttlMinutes);
+        this.memory = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, memory, "transcription_cache");
+
+        if (diskDir != null && !diskDir.isBlank()) {
+            this.diskDir = Files.createDirectories(Path.of(diskDir));
+        } else {
+            this.diskDir = null;
+        }
+        log.info("Transcription cache configured: maxSize={}, ttl={}m, diskDir={}", maxSize, ttlMinutes, this.diskDir);
+    }
+
+    /**
+     * SHA-256 файла, читается потоково
+     */
+    public String hash(Path audioFile) throws IOException {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[HASH_BUFFER_BYTES];
+        try (InputStream in = Files.newInputStream(audioFile)) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Транскрипт из кеша, либо результат loader (один на все одновременные запросы с этим хешем)
+     */
+    public CompletableFuture<String> get(String audioHash, Supplier<CompletableFuture<String>> loader) {
+        String cached = lookup(audioHash);
+        if (cached != null) {
+            log.info("Transcription cache hit for {}", audioHash);
+            return CompletableFuture.completedFuture(cached);
+        }
+        return inFlight.execute(audioHash, () -> loader.get().thenApply(transcript -> {
+            if (transcript != null && !transcript.isBlank()) {
+                put(audioHash, transcript);
+            }
+            return transcript;
+        }));
+    }
+
+    private String lookup(String audioHash) {
+        String cached = memory.getIfPresent(audioHash);
+        if (cached != null || diskDir == null) {
+            return cached;
+        }
+        Path file = diskDir.resolve(audioHash + ".txt");
+        try {
+            if (!Files.exists(file)) {
+                return null;
+            }
+            long ageMs = System.currentTimeMillis() - Files.getLastModifiedTime(file).toMillis();
+            if (ageMs > ttl.toMillis()) {
+                Files.deleteIfExists(file);
+                return null;
+            }
+            String transcript = Files.readString(file, StandardCharsets.UTF_8);
+            memory.put(audioHash, transcript);
+            return transcript;
+        } catch (IOException e) {
+            log.warn("Failed to read transcription cache file {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    private void put(String audioHash, String transcript) {
+        memory.put(audioHash, transcript);
+        if (diskDir == null) {
+            return;
+        }
+        // Запись через временный файл + move, чтобы параллельный читатель не увидел половину текста
+        try {
+            Path tmp = Files.createTempFile(diskDir, audioHash, ".tmp");
+            Files.writeString(tmp, transcript, StandardCharsets.UTF_8);
+            Files.move(tmp, diskDir.resolve(audioHash + ".txt"),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Failed to write transcription cache file for {}: {}", audioHash, e.getMessage());
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.zharkyn.aiassistant_backend.service;
 
 import com.zharkyn.aiassistant_backend.repository.UserRepository;
+import com.zharkyn.aiassistant_backend.security.PrincipalCache;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
@@ -11,18 +12,26 @@ import java.util.concurrent.ExecutionException;
 
 /**
  * Этот сервис отвечает за загрузку данных пользователя для Spring Security.
+ * Сначала смотрит в PrincipalCache, в Firestore идет только при промахе.
  */
 @Service
 @RequiredArgsConstructor
 public class UserDetailsServiceImpl implements UserDetailsService {
 
     private final UserRepository userRepository;
+    private final PrincipalCache principalCache;
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
         // В нашем приложении "username" - это email пользователя.
+        var cached = principalCache.getByEmail(username);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+        
         try {
             return userRepository.findByEmail(username)
+                    .map(principalCache::put)
                     .orElseThrow(() -> new UsernameNotFoundException("User not found with email: " + username));
         } catch (ExecutionException | InterruptedException e) {
             // Прерываем поток, если он был прерван во время ожидания
@@ -34,4 +43,3 @@ public class UserDetailsServiceImpl implements UserDetailsService {
         }
     }
 }
-
@@ -4,6 +4,8 @@ import com.google.cloud.Timestamp;
 import com.zharkyn.aiassistant_backend.dto.UserProfileDtos;
 import com.zharkyn.aiassistant_backend.model.User;
 import com.zharkyn.aiassistant_backend.repository.UserRepository;
+import com.zharkyn.aiassistant_backend.security.PrincipalCache;
+import com.zharkyn.aiassistant_backend.security.TokenRevocationRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -25,6 +27,8 @@ public class UserProfileService {
 
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final PrincipalCache principalCache;
+    private final TokenRevocationRegistry revocationRegistry;
     
     private static final long MAX_AVATAR_SIZE = 2 * 1024 * 1024; // 2MB
 
@@ -81,6 +85,7 @@ public class UserProfileService {
         
         currentUser.setUpdatedAt(Timestamp.now());
         userRepository.save(currentUser);
+        principalCache.invalidate(currentUser);
         
         log.info("Profile updated for user: {}", currentUser.getEmail());
         
@@ -118,6 +123,7 @@ public class UserProfileService {
         currentUser.setAvatarBase64(avatarDataUrl);
         currentUser.setUpdatedAt(Timestamp.now());
         userRepository.save(currentUser);
+        principalCache.invalidate(currentUser);
         
         log.info("Avatar uploaded for user: {}", currentUser.getEmail());
         
@@ -136,6 +142,7 @@ public class UserProfileService {
         currentUser.setAvatarBase64(null);
         currentUser.setUpdatedAt(Timestamp.now());
         userRepository.save(currentUser);
+        principalCache.invalidate(currentUser);
         
         log.info("Avatar deleted for user: {}", currentUser.getEmail());
     }
@@ -153,10 +160,15 @@ public class UserProfileService {
             throw new RuntimeException("Old password is incorrect");
         }
         
-        // Устанавливаем новый пароль
+        // Устанавливаем новый пароль и повышаем версию учетных данных (старые JWT становятся недействительными)
+        long credentialsVersion = currentUser.getCredentialsVersion() != null 
+                ? currentUser.getCredentialsVersion() + 1 : 1L;
         currentUser.setPassword(passwordEncoder.encode(request.getNewPassword()));
+        currentUser.setCredentialsVersion(credentialsVersion);
         currentUser.setUpdatedAt(Timestamp.now());
         userRepository.save(currentUser);
+        principalCache.invalidate(currentUser);
+        revocationRegistry.revokeBefore(currentUser.getId(), credentialsVersion);
         
         log.info("Password changed for user: {}", currentUser.getEmail());
     }
@@ -170,6 +182,8 @@ public class UserProfileService {
         // TODO: Удалить все связанные данные (интервью, резюме, оценки)
         
         userRepository.deleteById(currentUser.getId());
+        principalCache.invalidate(currentUser);
+        revocationRegistry.revokeAll(currentUser.getId());
         
         log.info("Account deleted for user: {}", currentUser.getEmail());
     }
@@ -1,6 +1,7 @@
 package com.zharkyn.aiassistant_backend.service;
 
 import com.google.cloud.storage.Blob;
+import com.google.cloud.storage.BlobInfo;
 import com.google.cloud.storage.Bucket;
 import com.google.firebase.cloud.StorageClient;
 import com.zharkyn.aiassistant_backend.dto.VoiceInterviewAnswerResponse;
@@ -9,17 +10,32 @@ import com.zharkyn.aiassistant_backend.model.VoiceInterview;
 import com.zharkyn.aiassistant_backend.model.VoiceMessage;
 import com.zharkyn.aiassistant_backend.repository.VoiceInterviewRepository;
 import com.zharkyn.aiassistant_backend.repository.VoiceMessageRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
 
 @Service
 @Slf4j
@@ -28,17 +44,45 @@ public class VoiceInterviewService {
     private final OpenAIChatService openAIService;
     private final VoiceInterviewRepository voiceInterviewRepository;
     private final VoiceMessageRepository voiceMessageRepository;
+    private final Scheduler blockingScheduler;
+    private final Executor transcriptionExecutor;
+    private final MeterRegistry meterRegistry;
+    private final BackgroundJobService backgroundJobs;
+    private final AudioPreprocessor audioPreprocessor;
+    private final TranscriptionCache transcriptionCache;
+
+    private static final int UPLOAD_BUFFER_BYTES = 256 * 1024;
+    private static final String QUESTION_FALLBACK =
+            "Извините, произошла ошибка при генерации следующего вопроса. Попробуйте еще раз.";
 
     @Value("${firebase.storage.bucket:}")
     private String storageBucket;
 
+    @Value("${voice.transcription.timeout-seconds:60}")
+    private long transcriptionTimeoutSeconds;
+
+    @Value("${voice.firestore.timeout-seconds:10}")
+    private long firestoreTimeoutSeconds;
+
     @Autowired
     public VoiceInterviewService(OpenAIChatService openAIService,
                                  VoiceInterviewRepository voiceInterviewRepository,
-                                 VoiceMessageRepository voiceMessageRepository) {
+                                 VoiceMessageRepository voiceMessageRepository,
+                                 Scheduler blockingScheduler,
+                                 @Qualifier("transcriptionExecutor") Executor transcriptionExecutor,
+                                 MeterRegistry meterRegistry,
+                                 BackgroundJobService backgroundJobs,
+                                 AudioPreprocessor audioPreprocessor,
+                                 TranscriptionCache transcriptionCache) {
         this.openAIService = openAIService;
         this.voiceInterviewRepository = voiceInterviewRepository;
         this.voiceMessageRepository = voiceMessageRepository;
+        this.blockingScheduler = blockingScheduler;
+        this.transcriptionExecutor = transcriptionExecutor;
+        this.meterRegistry = meterRegistry;
+        this.backgroundJobs = backgroundJobs;
+        this.audioPreprocessor = audioPreprocessor;
+        this.transcriptionCache = transcriptionCache;
     }
 
     public VoiceInterviewDtos.VoiceInterviewResponse startVoiceInterview(
@@ -47,32 +91,34 @@ public class VoiceInterviewService {
         
         String userId = getCurrentUserId();
         
-        VoiceInterview interview = new VoiceInterview();
-        interview.setUserId(userId);
-        interview.setPositionTitle(request.getPositionTitle());
-        interview.setCompanyName(request.getCompanyName());
-        interview.setStatus("active");
-        
-        String interviewId = voiceInterviewRepository.create(interview);
-        
+        // Первый вопрос не зависит от ID интервью - генерируем до создания, чтобы сразу записать счетчик
+        String firstQuestion = null;
         try {
-            String firstQuestion = openAIService.generateNextQuestion(
+            firstQuestion = openAIService.generateNextQuestion(
                     request.getPositionTitle(),
                     request.getCompanyName(),
                     request.getJobDescription(),
                     1,
                     ""
             );
-            VoiceMessage aiMessage = new VoiceMessage();
-            aiMessage.setSessionId(interviewId);
-            aiMessage.setSender("assistant");
-            aiMessage.setTextContent(firstQuestion);
-            voiceMessageRepository.create(aiMessage);
-            log.info("Initial AI question saved for session {}", interviewId);
         } catch (Exception e) {
             log.error("Failed to generate initial AI question", e);
         }
         
+        VoiceInterview interview = new VoiceInterview();
+        interview.setUserId(userId);
+        interview.setPositionTitle(request.getPositionTitle());
+        interview.setCompanyName(request.getCompanyName());
+        interview.setStatus("active");
+        interview.setQuestionCount(firstQuestion != null ? 1 : 0);
+        
+        String interviewId = voiceInterviewRepository.create(interview);
+        
+        if (firstQuestion != null) {
+            voiceMessageRepository.create(assistantMessage(interviewId, firstQuestion));
+            log.info("Initial AI question saved for session {}", interviewId);
+        }
+        
         log.info("Voice interview started: {}", interviewId);
         
         return new VoiceInterviewDtos.VoiceInterviewResponse(
@@ -92,6 +138,89 @@ public class VoiceInterviewService {
     public VoiceInterviewAnswerResponse submitAudioAnswer(String sessionId, MultipartFile audioFile, String userId) 
             throws IOException, ExecutionException, InterruptedException {
         
+        long started = System.nanoTime();
+        RecordedAnswer answer = recordAnswer(sessionId, audioFile, userId);
+        VoiceInterview interview = answer.interview();
+
+        // Генерация вопроса идет параллельно с фоновой архивацией и сохранением ответа пользователя
+        long generateStarted = System.nanoTime();
+        String aiQuestion;
+        try {
+            log.info("Generating next AI question #{} via OpenAI...", answer.nextQuestionNumber());
+            aiQuestion = openAIService.generateNextQuestion(
+                    interview.getPositionTitle(),
+                    interview.getCompanyName(),
+                    null,
+                    answer.nextQuestionNumber(),
+                    answer.transcript()
+            );
+        } catch (Exception e) {
+            log.error("Error generating AI question", e);
+            aiQuestion = QUESTION_FALLBACK;
+        }
+        recordStage(sessionId, "generate", generateStarted);
+
+        String aiMessageId = saveAssistantTurn(answer, aiQuestion);
+        log.info("AI message queued for saving with ID: {}", aiMessageId);
+        recordStage(sessionId, "total", started);
+
+        return new VoiceInterviewAnswerResponse(
+                true,
+                "Ответ обработан успешно",
+                aiQuestion,
+                aiMessageId
+        );
+    }
+
+    /**
+     * Потоковая обработка аудио-ответа: после сохранения и транскрибации ответа следующий вопрос
+     * отдается клиенту по мере генерации (SSE), чтобы озвучка/отображение начинались раньше.
+     * События: "transcript", "delta" (фрагменты вопроса), "done" (VoiceResponseDto после сохранения).
+     */
+    public Flux<ServerSentEvent<Object>> streamAudioAnswer(String sessionId, MultipartFile audioFile) {
+        String userId = getCurrentUserId();
+        
+        return Mono.fromCallable(() -> recordAnswer(sessionId, audioFile, userId))
+                .subscribeOn(blockingScheduler)
+                .flatMapMany(answer -> {
+                    VoiceInterview interview = answer.interview();
+                    StringBuilder aiQuestion = new StringBuilder();
+                    
+                    Flux<ServerSentEvent<Object>> deltas = openAIService.streamNextQuestion(
+                                    interview.getPositionTitle(),
+                                    interview.getCompanyName(),
+                                    null,
+                                    answer.nextQuestionNumber(),
+                                    answer.transcript())
+                            .doOnNext(aiQuestion::append)
+                            .map(delta -> event("delta", delta));
+                    
+                    Mono<ServerSentEvent<Object>> done = Mono.defer(() -> {
+                        if (aiQuestion.length() == 0) {
+                            return Mono.error(new RuntimeException("Empty chat response"));
+                        }
+                        String text = aiQuestion.toString();
+                        return Mono.fromCallable(() -> saveAssistantTurn(answer, text))
+                                .subscribeOn(blockingScheduler)
+                                .map(aiMessageId -> event("done", new VoiceInterviewDtos.VoiceResponseDto(
+                                        true, "Ответ обработан успешно", text, aiMessageId)));
+                    });
+                    
+                    return Flux.just(event("transcript", answer.transcript()))
+                            .concatWith(deltas)
+                            .concatWith(done);
+                });
+    }
+
+    /**
+     * Проверить доступ и запустить обработку ответа как граф зависимостей:
+     * загрузка в Storage (фоновая задача) и транскрибация идут параллельно, сообщение пользователя
+     * ставится в очередь на сохранение, когда готовы обе; номер вопроса берется из счетчика интервью.
+     * Возвращается, как только есть транскрипт - архивация и сохранение продолжаются в фоне.
+     */
+    private RecordedAnswer recordAnswer(String sessionId, MultipartFile audioFile, String userId) 
+            throws IOException, ExecutionException, InterruptedException {
+        
         log.info("Processing audio answer for session: {}", sessionId);
 
         VoiceInterview interview = voiceInterviewRepository.getById(sessionId);
@@ -104,81 +233,247 @@ public class VoiceInterviewService {
             log.error("Unauthorized access attempt to interview {} by user {}", sessionId, userId);
             throw new IllegalArgumentException("Unauthorized access to interview");
         }
+        interview.setId(sessionId);
+
+        if (storageBucket == null || storageBucket.isBlank()) {
+            throw new IllegalStateException("Firebase storage bucket is not configured.");
+        }
 
-        byte[] audioBytes = audioFile.getBytes();
+        // Запись не читается в память целиком: файл переносится во временный (multipart уже лежит на диске),
+        // а Storage и Whisper читают его потоково буферами фиксированного размера
+        Path audioPath = spoolToTempFile(audioFile);
         log.info("Audio file received: size = {} bytes, content type = {}", 
-                 audioBytes.length, audioFile.getContentType());
+                 audioFile.getSize(), audioFile.getContentType());
 
-        String audioFileName = "voice_answers/" + sessionId + "/" + System.currentTimeMillis() + ".webm";
+        // Повторная отправка той же записи берет транскрипт из кеша по хешу содержимого
+        CompletableFuture<String> transcription;
+        String audioType;
+        try {
+            // Тип по содержимому: веб-клиент шлет Ogg/Opus, без WebCodecs - webm, старые клиенты - WAV
+            audioType = audioPreprocessor.contentTypeOf(audioPath);
+            String audioHash = transcriptionCache.hash(audioPath);
+            transcription = transcriptionCache.get(audioHash,
+                    () -> startTranscription(sessionId, audioPath, audioType));
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(audioPath);
+            throw e;
+        }
 
-        if (storageBucket == null || storageBucket.isBlank()) {
-            throw new IllegalStateException("Firebase storage bucket is not configured.");
+        // Архивация аудио не нужна для следующего вопроса - уходит в фоновую очередь
+        CompletableFuture<String> upload = backgroundJobs.submit("voice.upload",
+                () -> timed(sessionId, "upload", () -> uploadAudio(sessionId, audioPath, audioType)));
+        CompletableFuture.allOf(upload, transcription).whenComplete((ignored, error) -> deleteQuietly(audioPath));
+        CompletableFuture<Integer> nextQuestionNumber = nextQuestionNumber(interview);
+
+        // Время сообщения фиксируется сейчас, чтобы оно шло раньше вопроса AI, даже если сохранится позже
+        VoiceMessage userMessage = userMessage(sessionId);
+        upload.exceptionally(error -> null)
+                .thenCombine(transcription, (audioUrl, transcript) -> {
+                    userMessage.setAudioUrl(audioUrl);
+                    if (transcript != null && !transcript.isBlank()) {
+                        userMessage.setTextContent(transcript);
+                    }
+                    return userMessage;
+                })
+                .thenAccept(message -> backgroundJobs.submit("voice.save_user",
+                        () -> voiceMessageRepository.create(message)));
+
+        return new RecordedAnswer(interview, awaitTranscript(transcription),
+                await(nextQuestionNumber, firestoreTimeoutSeconds, "next question number"));
+    }
+
+    /**
+     * Обрезка тишины и понижение частоты для STT (пустая запись отклоняется до сетевых вызовов),
+     * затем транскрибация на отдельном transcriptionExecutor (не на пуле, где ждет сам запрос)
+     */
+    private CompletableFuture<String> startTranscription(String sessionId, Path audioPath, String audioType) {
+        AudioPreprocessor.PreparedAudio sttAudio = timed(sessionId, "preprocess",
+                () -> prepareForStt(audioPath, audioType));
+        CompletableFuture<String> transcription = CompletableFuture.supplyAsync(
+                () -> timed(sessionId, "transcribe", () -> transcribe(sttAudio)), transcriptionExecutor);
+        if (sttAudio.derived()) {
+            transcription.whenComplete((ignored, error) -> deleteQuietly(sttAudio.path()));
+        }
+        return transcription;
+    }
+
+    /**
+     * Запрос, присоединившийся к чужой транскрибации, получает ее ошибку валидации как есть (400, а не 500)
+     */
+    private String awaitTranscript(CompletableFuture<String> transcription)
+            throws ExecutionException, InterruptedException {
+        try {
+            return await(transcription, transcriptionTimeoutSeconds, "transcription");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IllegalArgumentException invalid) {
+                throw invalid;
+            }
+            throw e;
         }
+    }
+
+    /**
+     * Ожидание с таймаутом: зависший вызов Whisper/Firestore не держит поток запроса бесконечно
+     */
+    private <T> T await(CompletableFuture<T> future, long timeoutSeconds, String what)
+            throws ExecutionException, InterruptedException {
+        try {
+            return future.get(timeoutSeconds, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Timed out after " + timeoutSeconds + "s waiting for " + what, e);
+        }
+    }
+
+    private Path spoolToTempFile(MultipartFile audioFile) throws IOException {
+        Path audioPath = Files.createTempFile("voice-answer-", ".audio");
+        try {
+            audioFile.transferTo(audioPath);
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(audioPath);
+            throw e;
+        }
+        return audioPath;
+    }
+
+    private AudioPreprocessor.PreparedAudio prepareForStt(Path audioPath, String audioType) {
+        try {
+            return audioPreprocessor.prepare(audioPath);
+        } catch (IOException e) {
+            log.warn("Audio preprocessing failed, sending original recording: {}", e.getMessage());
+            return new AudioPreprocessor.PreparedAudio(audioPath, audioType, false);
+        }
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Failed to delete temp audio file {}: {}", path, e.getMessage());
+        }
+    }
+
+    private String uploadAudio(String sessionId, Path audioPath, String audioType) {
+        String extension = switch (audioType) {
+            case "audio/wav" -> ".wav";
+            case "audio/ogg" -> ".ogg";
+            default -> ".webm";
+        };
+        String audioFileName = "voice_answers/" + sessionId + "/" + System.currentTimeMillis() + extension;
         String bucketName = normalizeBucket(storageBucket);
         Bucket bucket = StorageClient.getInstance().bucket(bucketName);
         
-        Blob blob = bucket.create(audioFileName, audioBytes, "audio/webm");
-        String audioUrl = blob.getMediaLink();
-        log.info("Audio file saved to Storage: {} in bucket {}", audioFileName, bucketName);
+        BlobInfo blobInfo = BlobInfo.newBuilder(bucketName, audioFileName)
+                .setContentType(audioType)
+                .build();
+        try {
+            // createFrom отправляет файл resumable-загрузкой кусками по UPLOAD_BUFFER_BYTES
+            Blob blob = bucket.getStorage().createFrom(blobInfo, audioPath, UPLOAD_BUFFER_BYTES);
+            log.info("Audio file saved to Storage: {} in bucket {}", audioFileName, bucketName);
+            return blob.getMediaLink();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to upload audio to Storage", e);
+        }
+    }
 
-        // Transcribe user's audio
-        String transcript;
+    /**
+     * Ошибка транскрибации не прерывает ответ - вопрос генерируется без текста ответа
+     */
+    private String transcribe(AudioPreprocessor.PreparedAudio audio) {
         try {
             log.info("Transcribing audio via OpenAI...");
-            transcript = openAIService.transcribeAudio(audioBytes);
+            String transcript = openAIService.transcribeAudio(audio.path(), audio.contentType());
             log.info("Transcript received: {} chars", transcript != null ? transcript.length() : 0);
+            return transcript == null ? "" : transcript;
         } catch (Exception e) {
             log.error("Error transcribing audio", e);
-            transcript = null;
+            return "";
         }
+    }
+
+    /**
+     * Номер следующего вопроса из счетчика; для старых интервью без счетчика - по сообщениям
+     */
+    private CompletableFuture<Integer> nextQuestionNumber(VoiceInterview interview) {
+        if (interview.getQuestionCount() != null) {
+            return CompletableFuture.completedFuture(interview.getQuestionCount() + 1);
+        }
+        return voiceMessageRepository.getBySessionIdAsync(interview.getId())
+                .thenApply(existing -> (int) existing.stream()
+                        .filter(m -> "assistant".equalsIgnoreCase(m.getSender()))
+                        .count() + 1)
+                .exceptionally(ex -> {
+                    log.warn("Could not compute next question number, defaulting to 1", ex);
+                    return 1;
+                });
+    }
 
+    /**
+     * Поставить в фоновую очередь сохранение вопроса AI и обновить счетчик вопросов.
+     * ID сообщения выдается заранее, поэтому ответ клиенту не ждет записи сообщения,
+     * а повтор задачи перезаписывает тот же документ. Счетчик (одно поле) пишется синхронно:
+     * следующий ответ читает из него номер вопроса и не должен увидеть старое значение.
+     */
+    private String saveAssistantTurn(RecordedAnswer answer, String aiQuestion)
+            throws ExecutionException, InterruptedException {
+        String sessionId = answer.interview().getId();
+        VoiceMessage aiMessage = assistantMessage(sessionId, aiQuestion);
+        backgroundJobs.submit("voice.save_ai", () -> voiceMessageRepository.create(aiMessage));
+        long countStarted = System.nanoTime();
+        await(voiceInterviewRepository.updateQuestionCountAsync(sessionId, answer.nextQuestionNumber()),
+                firestoreTimeoutSeconds, "question count update");
+        recordStage(sessionId, "question_count", countStarted);
+        return aiMessage.getId();
+    }
+
+    private VoiceMessage userMessage(String sessionId) {
         VoiceMessage userMessage = new VoiceMessage();
+        userMessage.setId(voiceMessageRepository.nextId());
         userMessage.setSessionId(sessionId);
         userMessage.setSender("user");
-        userMessage.setAudioUrl(audioUrl);
-        if (transcript != null && !transcript.isBlank()) {
-            userMessage.setTextContent(transcript);
-        }
-        String userMessageId = voiceMessageRepository.create(userMessage);
-        log.info("User message saved with ID: {}", userMessageId);
+        userMessage.setTimestamp(System.currentTimeMillis());
+        return userMessage;
+    }
 
-        int nextQuestionNumber = 1;
+    private <T> T timed(String sessionId, String stage, Supplier<T> task) {
+        long started = System.nanoTime();
         try {
-            List<VoiceMessage> existing = voiceMessageRepository.getBySessionId(sessionId);
-            long assistantCount = existing.stream().filter(m -> "assistant".equalsIgnoreCase(m.getSender())).count();
-            nextQuestionNumber = (int) assistantCount + 1;
-        } catch (Exception ex) {
-            log.warn("Could not compute next question number, defaulting to 1", ex);
+            return task.get();
+        } finally {
+            recordStage(sessionId, stage, started);
         }
+    }
 
-        String aiQuestion;
-        try {
-            log.info("Generating next AI question #{} via OpenAI...", nextQuestionNumber);
-            aiQuestion = openAIService.generateNextQuestion(
-                    interview.getPositionTitle(),
-                    interview.getCompanyName(),
-                    null,
-                    nextQuestionNumber,
-                    transcript == null ? "" : transcript
-            );
-        } catch (Exception e) {
-            log.error("Error generating AI question", e);
-            aiQuestion = "Извините, произошла ошибка при генерации следующего вопроса. Попробуйте еще раз.";
-        }
+    /**
+     * Латентность этапа: в лог и в таймер voice.answer.stage{stage=...}
+     */
+    private void recordStage(String sessionId, String stage, long startedNanos) {
+        long elapsed = System.nanoTime() - startedNanos;
+        Timer.builder("voice.answer.stage")
+                .tag("stage", stage)
+                .register(meterRegistry)
+                .record(elapsed, TimeUnit.NANOSECONDS);
+        log.info("Voice answer {} stage '{}' took {} ms", sessionId, stage, TimeUnit.NANOSECONDS.toMillis(elapsed));
+    }
 
+    private VoiceMessage assistantMessage(String sessionId, String text) {
         VoiceMessage aiMessage = new VoiceMessage();
+        aiMessage.setId(voiceMessageRepository.nextId());
         aiMessage.setSessionId(sessionId);
         aiMessage.setSender("assistant");
-        aiMessage.setTextContent(aiQuestion);
-        String aiMessageId = voiceMessageRepository.create(aiMessage);
-        log.info("AI message saved with ID: {}", aiMessageId);
+        aiMessage.setTextContent(text);
+        // Время фиксируется при генерации, а не при фоновой записи - иначе вопрос может встать после следующего ответа
+        aiMessage.setTimestamp(System.currentTimeMillis());
+        return aiMessage;
+    }
 
-        return new VoiceInterviewAnswerResponse(
-                true,
-                "Ответ обработан успешно",
-                aiResponse,
-                aiMessageId
-        );
+    private ServerSentEvent<Object> event(String name, Object data) {
+        return ServerSentEvent.<Object>builder(data).event(name).build();
+    }
+
+    /**
+     * Сохраненный ответ пользователя и данные для генерации следующего вопроса
+     */
+    private record RecordedAnswer(VoiceInterview interview, String transcript, int nextQuestionNumber) {
     }
 
     public VoiceInterviewDtos.AudioResponse getQuestionAudio(String sessionId, Integer questionNumber) 
@@ -0,0 +1,133 @@
+package com.zharkyn.aiassistant_backend.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Нагрузочный тест режимов blockingExecutor: много одновременных "запросов", каждый ждет
+ * ответа Firestore на future.get(). Вместо Firestore - заглушка, завершающая future через
+ * фиксированную задержку, поэтому потолок задается только числом потоков, которые можно припарковать.
+ */
+@Slf4j
+class ExecutionConfigLoadTest {
+
+    private static final int CONCURRENT_REQUESTS = 500;
+    private static final int POOL_SIZE = 64;
+    private static final long FIRESTORE_LATENCY_MS = 50;
+
+    private final ExecutionConfig executionConfig = new ExecutionConfig();
+    private ScheduledExecutorService firestore;
+
+    @BeforeEach
+    void setUp() {
+        firestore = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @AfterEach
+    void tearDown() {
+        firestore.shutdownNow();
+    }
+
+    @Test
+    void platformPoolCapsParkedFirestoreCallsAtPoolSize() throws Exception {
+        ThreadPoolTaskExecutor executor =
+                (ThreadPoolTaskExecutor) executionConfig.platformBlockingExecutor(POOL_SIZE, CONCURRENT_REQUESTS);
+        executor.initialize();
+        try {
+            LoadResult result = runLoad("platform", executor);
+
+            assertThat(result.peakInFlight()).isLessThanOrEqualTo(POOL_SIZE);
+            // Запросы идут волнами по POOL_SIZE, каждая волна ждет задержку Firestore
+            assertThat(result.elapsedMs())
+                    .isGreaterThanOrEqualTo(CONCURRENT_REQUESTS / POOL_SIZE * FIRESTORE_LATENCY_MS);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void firestoreCallbackExecutorNeverRejectsWhileBusy() throws Exception {
+        ThreadPoolTaskExecutor executor =
+                (ThreadPoolTaskExecutor) executionConfig.platformFirestoreCallbackExecutor(1);
+        executor.initialize();
+        try {
+            CompletableFuture<Void> blocker = new CompletableFuture<>();
+            executor.execute(blocker::join);
+            // Больше callback'ов, чем очередь blockingExecutor: ни один не должен потеряться
+            AtomicInteger completed = new AtomicInteger();
+            for (int i = 0; i < CONCURRENT_REQUESTS * 4; i++) {
+                executor.execute(completed::incrementAndGet);
+            }
+            blocker.complete(null);
+
+            executor.submitCompletable(() -> null).get(10, TimeUnit.SECONDS);
+            assertThat(completed.get()).isEqualTo(CONCURRENT_REQUESTS * 4);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Виртуальные потоки есть только с Java 21: на сборке под JDK 17 (java.version в pom) тест пропускается,
+     * проверяется только запуском тестов на JDK 21+ (mvn test с JAVA_HOME на 21)
+     */
+    @Test
+    @EnabledForJreRange(min = JRE.JAVA_21)
+    void virtualThreadsParkFirestoreCallsBeyondPlatformPoolSize() throws Exception {
+        LoadResult result = runLoad("virtual", executionConfig.virtualBlockingExecutor());
+
+        assertThat(result.peakInFlight()).isGreaterThan(POOL_SIZE);
+    }
+
+    private LoadResult runLoad(String mode, AsyncTaskExecutor executor) throws Exception {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger peakInFlight = new AtomicInteger();
+        List<CompletableFuture<String>> requests = new ArrayList<>();
+
+        long started = System.nanoTime();
+        for (int i = 0; i < CONCURRENT_REQUESTS; i++) {
+            requests.add(executor.submitCompletable(() -> {
+                peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                try {
+                    return firestoreRead().get();
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            }));
+        }
+        CompletableFuture.allOf(requests.toArray(CompletableFuture[]::new)).get(30, TimeUnit.SECONDS);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+        log.info("{}: {} requests in {} ms ({} req/s), peak parked calls {}", mode, CONCURRENT_REQUESTS,
+                elapsedMs, CONCURRENT_REQUESTS * 1000L / Math.max(1, elapsedMs), peakInFlight.get());
+        return new LoadResult(elapsedMs, peakInFlight.get());
+    }
+
+    /**
+     * Заглушка Firestore: документ готов через FIRESTORE_LATENCY_MS, вызывающий поток паркуется на get()
+     */
+    private CompletableFuture<String> firestoreRead() {
+        CompletableFuture<String> document = new CompletableFuture<>();
+        firestore.schedule(() -> document.complete("document"), FIRESTORE_LATENCY_MS, TimeUnit.MILLISECONDS);
+        return document;
+    }
+
+    private record LoadResult(long elapsedMs, int peakInFlight) {
+    }
+}
@@ -0,0 +1,217 @@
+package com.zharkyn.aiassistant_backend.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AudioPreprocessorTest {
+
+    private static final int SOURCE_RATE = 48_000;
+
+    @TempDir
+    Path tempDir;
+
+    private AudioPreprocessor preprocessor;
+
+    @BeforeEach
+    void setUp() {
+        preprocessor = new AudioPreprocessor();
+        ReflectionTestUtils.setField(preprocessor, "enabled", true);
+        ReflectionTestUtils.setField(preprocessor, "targetSampleRate", 16_000);
+        ReflectionTestUtils.setField(preprocessor, "vadThreshold", 0.015);
+        ReflectionTestUtils.setField(preprocessor, "minSpeechMs", 300);
+        ReflectionTestUtils.setField(preprocessor, "paddingMs", 200);
+        ReflectionTestUtils.setField(preprocessor, "minCompressedBytes", 2048L);
+    }
+
+    @Test
+    void trimsSilenceDownmixesAndResamplesWav() throws Exception {
+        Path source = writeWav("answer.wav", 2, 500, 1000, 500);
+        long sourceSize = Files.size(source);
+
+        AudioPreprocessor.PreparedAudio prepared = preprocessor.prepare(source);
+        try {
+            assertThat(prepared.derived()).isTrue();
+            assertThat(prepared.contentType()).isEqualTo("audio/wav");
+            assertThat(prepared.path()).isNotEqualTo(source);
+            assertThat(Files.size(source)).isEqualTo(sourceSize);
+
+            AudioFileFormat result = AudioSystem.getAudioFileFormat(prepared.path().toFile());
+            assertThat(result.getFormat().getSampleRate()).isEqualTo(16_000f);
+            assertThat(result.getFormat().getChannels()).isEqualTo(1);
+            assertThat(result.getFormat().getSampleSizeInBits()).isEqualTo(16);
+            // 1 с речи + по 200 мс запаса с каждой стороны
+            double seconds = result.getFrameLength() / 16_000.0;
+            assertThat(seconds).isBetween(1.35, 1.45);
+            assertThat(peakAmplitude(prepared.path())).isGreaterThan(0.3);
+        } finally {
+            Files.deleteIfExists(prepared.path());
+        }
+    }
+
+    @Test
+    void keepsSpeechAtTheVeryStartWithoutPadding() throws Exception {
+        Path source = writeWav("start.wav", 1, 0, 600, 1000);
+
+        AudioPreprocessor.PreparedAudio prepared = preprocessor.prepare(source);
+        try {
+            double seconds = AudioSystem.getAudioFileFormat(prepared.path().toFile()).getFrameLength() / 16_000.0;
+            assertThat(seconds).isBetween(0.75, 0.85);
+        } finally {
+            Files.deleteIfExists(prepared.path());
+        }
+    }
+
+    @Test
+    void rejectsSilentWav() throws Exception {
+        Path source = writeWav("silence.wav", 1, 2000);
+
+        assertThatThrownBy(() -> preprocessor.prepare(source))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Recording is empty");
+    }
+
+    @Test
+    void rejectsWavWithTooLittleSpeech() throws Exception {
+        Path source = writeWav("click.wav", 1, 500, 100, 500);
+
+        assertThatThrownBy(() -> preprocessor.prepare(source))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void passesCompressedAudioThroughAsWebm() throws Exception {
+        Path source = writeCompressed("answer.webm", 4096);
+
+        AudioPreprocessor.PreparedAudio prepared = preprocessor.prepare(source);
+
+        assertThat(prepared.derived()).isFalse();
+        assertThat(prepared.path()).isEqualTo(source);
+        assertThat(prepared.contentType()).isEqualTo("audio/webm");
+    }
+
+    @Test
+    void passesClientOggThroughAsOgg() throws Exception {
+        Path source = writeOgg("answer.ogg", 4096);
+
+        AudioPreprocessor.PreparedAudio prepared = preprocessor.prepare(source);
+
+        assertThat(prepared.derived()).isFalse();
+        assertThat(prepared.contentType()).isEqualTo("audio/ogg");
+        assertThat(preprocessor.contentTypeOf(source)).isEqualTo("audio/ogg");
+    }
+
+    @Test
+    void rejectsTinyCompressedAudio() throws Exception {
+        Path source = writeCompressed("empty.webm", 300);
+
+        assertThatThrownBy(() -> preprocessor.prepare(source))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void disabledPreprocessingStillLabelsByContent() throws Exception {
+        ReflectionTestUtils.setField(preprocessor, "enabled", false);
+        Path wav = writeWav("silence.wav", 1, 1000);
+        Path webm = writeCompressed("answer.webm", 300);
+
+        AudioPreprocessor.PreparedAudio preparedWav = preprocessor.prepare(wav);
+        AudioPreprocessor.PreparedAudio preparedWebm = preprocessor.prepare(webm);
+
+        assertThat(preparedWav.path()).isEqualTo(wav);
+        assertThat(preparedWav.derived()).isFalse();
+        assertThat(preparedWav.contentType()).isEqualTo("audio/wav");
+        assertThat(preparedWebm.contentType()).isEqualTo("audio/webm");
+    }
+
+    @Test
+    void detectsContentTypeFromHeaderNotExtension() throws Exception {
+        Path wavNamedWebm = writeWav("answer.webm", 1, 100);
+        Path webmNamedWav = writeCompressed("answer.wav", 4096);
+
+        assertThat(preprocessor.contentTypeOf(wavNamedWebm)).isEqualTo("audio/wav");
+        assertThat(preprocessor.contentTypeOf(webmNamedWav)).isEqualTo("audio/webm");
+    }
+
+    /**
+     * 16-bit WAV на 48 kHz: сегменты по очереди тишина / тон 440 Гц (0.5 полной шкалы) / тишина...
+     */
+    private Path writeWav(String name, int channels, int... segmentsMs) throws Exception {
+        int totalFrames = 0;
+        for (int ms : segmentsMs) {
+            totalFrames += SOURCE_RATE * ms / 1000;
+        }
+        byte[] pcm = new byte[totalFrames * channels * 2];
+        int frame = 0;
+        for (int segment = 0; segment < segmentsMs.length; segment++) {
+            boolean tone = segment % 2 == 1;
+            int frames = SOURCE_RATE * segmentsMs[segment] / 1000;
+            for (int i = 0; i < frames; i++, frame++) {
+                short value = tone
+                        ? (short) (0.5 * Short.MAX_VALUE * Math.sin(2 * Math.PI * 440 * frame / SOURCE_RATE))
+                        : 0;
+                for (int c = 0; c < channels; c++) {
+                    int offset = (frame * channels + c) * 2;
+                    pcm[offset] = (byte) (value & 0xFF);
+                    pcm[offset + 1] = (byte) ((value >> 8) & 0xFF);
+                }
+            }
+        }
+
+        AudioFormat format = new AudioFormat(SOURCE_RATE, 16, channels, true, false);
+        Path path = tempDir.resolve(name);
+        try (AudioInputStream stream = new AudioInputStream(new ByteArrayInputStream(pcm), format, totalFrames)) {
+            AudioSystem.write(stream, AudioFileFormat.Type.WAVE, path.toFile());
+        }
+        return path;
+    }
+
+    /**
+     * Файл с сигнатурой EBML (webm), который javax.sound не распознает
+     */
+    private Path writeCompressed(String name, int size) throws Exception {
+        byte[] bytes = new byte[size];
+        bytes[0] = 0x1A;
+        bytes[1] = 0x45;
+        bytes[2] = (byte) 0xDF;
+        bytes[3] = (byte) 0xA3;
+        for (int i = 4; i < size; i++) {
+            bytes[i] = (byte) (i * 31);
+        }
+        return Files.write(tempDir.resolve(name), bytes);
+    }
+
+    /**
+     * Файл с сигнатурой страницы Ogg, как у записи, сжатой веб-клиентом
+     */
+    private Path writeOgg(String name, int size) throws Exception {
+        Path path = writeCompressed(name, size);
+        byte[] bytes = Files.readAllBytes(path);
+        System.arraycopy(new byte[]{'O', 'g', 'g', 'S'}, 0, bytes, 0, 4);
+        return Files.write(path, bytes);
+    }
+
+    private static double peakAmplitude(Path wav) throws Exception {
+        try (AudioInputStream stream = AudioSystem.getAudioInputStream(wav.toFile())) {
+            byte[] pcm = stream.readAllBytes();
+            int peak = 0;
+            for (int i = 0; i + 1 < pcm.length; i += 2) {
+                int value = (short) ((pcm[i] & 0xFF) | (pcm[i + 1] << 8));
+                peak = Math.max(peak, Math.abs(value));
+            }
+            return peak / (double) Short.MAX_VALUE;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.zharkyn.aiassistant_backend.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BackgroundJobServiceTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private BackgroundJobService backgroundJobs;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        release.countDown();
+        if (backgroundJobs != null) {
+            backgroundJobs.shutdown();
+        }
+    }
+
+    @Test
+    void retriesFailedJobUntilSuccess() throws Exception {
+        backgroundJobs = service(1, 10, 4, 1);
+        AtomicInteger calls = new AtomicInteger();
+
+        CompletableFuture<String> result = backgroundJobs.submit("test.flaky", () -> {
+            if (calls.incrementAndGet() < 3) {
+                throw new IllegalStateException("transient");
+            }
+            return "done";
+        });
+
+        assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("done");
+        assertThat(meterRegistry.counter("background.jobs.retries", "job", "test.flaky").count()).isEqualTo(2);
+        assertThat(deadLetters("test.flaky")).isZero();
+    }
+
+    @Test
+    void deadLettersJobAfterLastAttempt() {
+        backgroundJobs = service(1, 10, 3, 1);
+
+        CompletableFuture<Object> result = backgroundJobs.submit("test.broken", () -> {
+            throw new IllegalStateException("permanent");
+        });
+
+        assertThatThrownBy(() -> result.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(IllegalStateException.class);
+        assertThat(deadLetters("test.broken")).isEqualTo(1);
+    }
+
+    @Test
+    void completesJobsSubmittedAfterShutdownExceptionally() throws Exception {
+        backgroundJobs = service(1, 10, 3, 1);
+        backgroundJobs.shutdown();
+
+        CompletableFuture<String> result = backgroundJobs.submit("test.late", () -> "never");
+
+        assertThatThrownBy(() -> result.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(RejectedExecutionException.class);
+        assertThat(deadLetters("test.late")).isEqualTo(1);
+    }
+
+    @Test
+    void deadLettersPendingRetryOnShutdown() throws Exception {
+        backgroundJobs = service(1, 10, 3, 60_000);
+        CompletableFuture<Object> result = backgroundJobs.submit("test.retry", () -> {
+            throw new IllegalStateException("transient");
+        });
+        awaitRetries("test.retry", 1);
+
+        backgroundJobs.shutdown();
+
+        assertThatThrownBy(() -> result.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(RejectedExecutionException.class);
+        assertThat(deadLetters("test.retry")).isEqualTo(1);
+    }
+
+    @Test
+    void runsFirstAttemptInCallerWhenQueueIsFull() throws Exception {
+        backgroundJobs = service(1, 1, 3, 1);
+        occupyWorkerAndQueue();
+
+        CompletableFuture<String> result = backgroundJobs.submit("test.overflow", () -> Thread.currentThread().getName());
+
+        assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo(Thread.currentThread().getName());
+    }
+
+    @Test
+    void neverRunsRetryOnRetrySchedulerWhenQueueIsFull() throws Exception {
+        backgroundJobs = service(1, 1, 5, 1);
+        occupyWorkerAndQueue();
+        List<String> attemptThreads = new CopyOnWriteArrayList<>();
+
+        // Первая попытка выполняется в вызывающем потоке и падает, повтор упирается в заполненную очередь
+        CompletableFuture<String> result = backgroundJobs.submit("test.retry_full", () -> {
+            attemptThreads.add(Thread.currentThread().getName());
+            if (attemptThreads.size() == 1) {
+                throw new IllegalStateException("transient");
+            }
+            return "done";
+        });
+        awaitRetries("test.retry_full", 1);
+        TimeUnit.MILLISECONDS.sleep(50);
+        assertThat(attemptThreads).hasSize(1);
+
+        release.countDown();
+
+        assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("done");
+        assertThat(attemptThreads.get(1)).startsWith("bg-job-").doesNotStartWith("bg-job-retry-");
+    }
+
+    @Test
+    void dropsBestEffortJobWhenQueueIsFull() throws Exception {
+        backgroundJobs = service(1, 10, 3, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        backgroundJobs.submitBestEffort("test.blocker", () -> {
+            started.countDown();
+            return release.await(10, TimeUnit.SECONDS);
+        });
+        started.await(5, TimeUnit.SECONDS);
+        backgroundJobs.submitBestEffort("test.queued", () -> true);
+
+        CompletableFuture<Boolean> dropped = backgroundJobs.submitBestEffort("test.summary", () -> true);
+
+        assertThatThrownBy(() -> dropped.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(RejectedExecutionException.class);
+        assertThat(meterRegistry.counter("background.jobs.dropped", "job", "test.summary").count()).isEqualTo(1);
+    }
+
+    /**
+     * Единственный воркер занят до release, единственное место в очереди тоже занято
+     */
+    private void occupyWorkerAndQueue() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        backgroundJobs.submit("test.blocker", () -> {
+            started.countDown();
+            return release.await(10, TimeUnit.SECONDS);
+        });
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        backgroundJobs.submit("test.queued", () -> true);
+    }
+
+    private void awaitRetries(String jobName, int retries) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (meterRegistry.counter("background.jobs.retries", "job", jobName).count() < retries) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            TimeUnit.MILLISECONDS.sleep(5);
+        }
+    }
+
+    private double deadLetters(String jobName) {
+        return meterRegistry.counter("background.jobs.dead_letter", "job", jobName).count();
+    }
+
+    private BackgroundJobService service(int workers, int queueCapacity, int maxAttempts, long backoffMs) {
+        return new BackgroundJobService(meterRegistry, workers, queueCapacity, maxAttempts, backoffMs, backoffMs,
+                1, 1);
+    }
+}
@@ -0,0 +1,169 @@
+package com.zharkyn.aiassistant_backend.service;
+
+import com.zharkyn.aiassistant_backend.model.ChatMessage;
+import com.zharkyn.aiassistant_backend.model.InterviewSession;
+import com.zharkyn.aiassistant_backend.repository.InterviewSessionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class ConversationContextManagerTest {
+
+    private static final int RECENT_TURNS = 4;
+    // 100 токенов на сообщение при оценке 4 символа на токен
+    private static final String LONG_TEXT = "x".repeat(400);
+
+    private final GeminiService geminiService = mock(GeminiService.class);
+    private final InterviewSessionRepository sessionRepository = mock(InterviewSessionRepository.class);
+    private final BackgroundJobService backgroundJobs = mock(BackgroundJobService.class);
+
+    private ConversationContextManager contextManager;
+
+    @BeforeEach
+    void setUp() {
+        contextManager = new ConversationContextManager(geminiService, sessionRepository, backgroundJobs);
+        ReflectionTestUtils.setField(contextManager, "recentTurns", RECENT_TURNS);
+        ReflectionTestUtils.setField(contextManager, "tokenBudget", 1000);
+    }
+
+    @Test
+    void sendsWholeHistoryWithinTokenBudget() {
+        List<ChatMessage> history = history(6, "short");
+
+        ConversationContextManager.ConversationWindow window = contextManager.window(session(null, null), history);
+
+        assertThat(window.summary()).isNull();
+        assertThat(window.messages()).isEqualTo(history);
+        assertThat(window.summarizedCount()).isZero();
+        assertThat(window.summarizeUpTo()).isZero();
+    }
+
+    @Test
+    void keepsAgedMessagesVerbatimUntilSummaryExists() {
+        List<ChatMessage> history = history(20, LONG_TEXT);
+
+        ConversationContextManager.ConversationWindow window = contextManager.window(session(null, null), history);
+
+        assertThat(window.summary()).isNull();
+        assertThat(window.messages()).isEqualTo(history);
+        assertThat(window.summarizedCount()).isZero();
+        assertThat(window.summarizeUpTo()).isEqualTo(20 - RECENT_TURNS * 2);
+    }
+
+    @Test
+    void windowStartsAtQuestionNotAnswer() {
+        // Последним идет новый вопрос без ответа: граница 21 - 8 = 13 попадает на ответ
+        List<ChatMessage> history = history(21, LONG_TEXT);
+
+        ConversationContextManager.ConversationWindow window = contextManager.window(session(null, null), history);
+
+        assertThat(window.summarizeUpTo()).isEqualTo(12);
+        assertThat(history.get(window.summarizeUpTo()).getRole()).isEqualTo(ChatMessage.MessageRole.MODEL);
+    }
+
+    @Test
+    void replacesSummarizedPrefixWithSummary() {
+        List<ChatMessage> history = history(20, LONG_TEXT);
+
+        ConversationContextManager.ConversationWindow window =
+                contextManager.window(session("Candidate has 5 years of Java.", 10), history);
+
+        assertThat(window.summary()).isEqualTo("Candidate has 5 years of Java.");
+        assertThat(window.messages()).isEqualTo(history.subList(10, 20));
+        assertThat(window.summarizedCount()).isEqualTo(10);
+        assertThat(window.summarizeUpTo()).isEqualTo(12);
+    }
+
+    @Test
+    void neverSummarizesPastTheRecentTurns() {
+        List<ChatMessage> history = history(20, LONG_TEXT);
+
+        ConversationContextManager.ConversationWindow window =
+                contextManager.window(session("Summary of a longer history", 16), history);
+
+        assertThat(window.summarizedCount()).isEqualTo(12);
+        assertThat(window.messages()).hasSize(RECENT_TURNS * 2);
+    }
+
+    @Test
+    void ignoresCountWithoutSummaryText() {
+        List<ChatMessage> history = history(20, LONG_TEXT);
+
+        ConversationContextManager.ConversationWindow window = contextManager.window(session(null, 10), history);
+
+        assertThat(window.summary()).isNull();
+        assertThat(window.summarizedCount()).isZero();
+        assertThat(window.messages()).isEqualTo(history);
+    }
+
+    @Test
+    void doesNotRefreshWhenNothingNewAged() {
+        List<ChatMessage> history = history(20, LONG_TEXT);
+        InterviewSession session = session("Summary", 12);
+        ConversationContextManager.ConversationWindow window = contextManager.window(session, history);
+
+        contextManager.refreshSummaryInBackground(session, history, window);
+
+        verifyNoInteractions(backgroundJobs, geminiService, sessionRepository);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void refreshesSummaryWithNewlyAgedMessagesOnly() throws Exception {
+        List<ChatMessage> history = history(20, LONG_TEXT);
+        InterviewSession session = session("Old summary", 10);
+        ConversationContextManager.ConversationWindow window = contextManager.window(session, history);
+        when(geminiService.summarizeConversation(eq("Old summary"), any())).thenReturn(Mono.just(" New summary "));
+        when(sessionRepository.updateHistorySummaryAsync("session-1", "New summary", 12))
+                .thenReturn(CompletableFuture.completedFuture(true));
+
+        contextManager.refreshSummaryInBackground(session, history, window);
+
+        ArgumentCaptor<Callable<Boolean>> job = ArgumentCaptor.forClass(Callable.class);
+        verify(backgroundJobs).submitBestEffort(eq("interview.summarize"), job.capture());
+        assertThat(job.getValue().call()).isTrue();
+
+        ArgumentCaptor<List<ChatMessage>> aged = ArgumentCaptor.forClass(List.class);
+        verify(geminiService).summarizeConversation(eq("Old summary"), aged.capture());
+        assertThat(aged.getValue()).isEqualTo(history.subList(10, 12));
+        verify(sessionRepository).updateHistorySummaryAsync("session-1", "New summary", 12);
+    }
+
+    private static InterviewSession session(String summary, Integer summarizedCount) {
+        return InterviewSession.builder()
+                .id("session-1")
+                .historySummary(summary)
+                .summarizedMessageCount(summarizedCount)
+                .build();
+    }
+
+    /**
+     * Вопросы модели на четных позициях, ответы кандидата на нечетных
+     */
+    private static List<ChatMessage> history(int size, String content) {
+        List<ChatMessage> history = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            history.add(ChatMessage.builder()
+                    .role(i % 2 == 0 ? ChatMessage.MessageRole.MODEL : ChatMessage.MessageRole.USER)
+                    .content(content)
+                    .questionNumber(i / 2 + 1)
+                    .build());
+        }
+        return history;
+    }
+}
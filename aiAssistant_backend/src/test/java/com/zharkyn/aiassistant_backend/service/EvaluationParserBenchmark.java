@@ -0,0 +1,223 @@
+package com.zharkyn.aiassistant_backend.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.zharkyn.aiassistant_backend.dto.AnalyticsDtos;
+import com.zharkyn.aiassistant_backend.model.ChatMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Разбор оценок Gemini: старый путь (текстовый шаблон, разбитый split("\n") трижды - score, feedback,
+ * списки; пакет через ObjectMapper.readTree) против EvaluationParser (один проход по строкам текста,
+ * потоковый JsonParser для JSON и пакета).
+ *
+ * Входные данные - seed'ы из evaluation-corpus (синтетические ответы в формате Gemini),
+ * пакет дополнительно размножен до BATCH_SIZE элементов, как при оценке длинного интервью.
+ *
+ * Запуск: mvn test-compile, затем main этого класса с test classpath
+ * (например, из IDE или mvn exec:java -Dexec.classpathScope=test -Dexec.mainClass=...).
+ * Результат - разобранных ответов в секунду для каждого варианта.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EvaluationParserBenchmark {
+
+    private static final int BATCH_SIZE = 20;
+    private static final ChatMessage.QuestionType QUESTION_TYPE = ChatMessage.QuestionType.TECHNICAL;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private EvaluationParser parser;
+    private String textEvaluation;
+    private String jsonEvaluation;
+    private String batchEvaluation;
+    private Map<Integer, ChatMessage.QuestionType> batchQuestionTypes;
+
+    @Setup
+    public void setUp() throws IOException {
+        parser = new EvaluationParser();
+        textEvaluation = corpus("single-text.txt");
+        jsonEvaluation = corpus("single-json.json");
+
+        JsonNode seedItems = objectMapper.readTree(corpus("batch.json"));
+        List<JsonNode> items = new ArrayList<>();
+        batchQuestionTypes = new HashMap<>();
+        for (int id = 1; id <= BATCH_SIZE; id++) {
+            JsonNode item = seedItems.get((id - 1) % seedItems.size()).deepCopy();
+            ((ObjectNode) item).put("id", id);
+            items.add(item);
+            batchQuestionTypes.put(id, ChatMessage.QuestionType.values()[id % ChatMessage.QuestionType.values().length]);
+        }
+        batchEvaluation = objectMapper.writeValueAsString(items);
+    }
+
+    @Benchmark
+    public AnalyticsDtos.AnswerEvaluation legacyParseText() {
+        return legacyParseAIEvaluation(textEvaluation, QUESTION_TYPE);
+    }
+
+    @Benchmark
+    public AnalyticsDtos.AnswerEvaluation onePassParseText() {
+        return parser.parseEvaluation(textEvaluation, QUESTION_TYPE);
+    }
+
+    /**
+     * Старый код JSON для одиночной оценки не разбирал - только новый путь (structured output)
+     */
+    @Benchmark
+    public AnalyticsDtos.AnswerEvaluation onePassParseJson() {
+        return parser.parseEvaluation(jsonEvaluation, QUESTION_TYPE);
+    }
+
+    @Benchmark
+    public Map<Integer, AnalyticsDtos.AnswerEvaluation> legacyParseBatch() {
+        return legacyParseBatchEvaluation(batchEvaluation, batchQuestionTypes);
+    }
+
+    @Benchmark
+    public Map<Integer, AnalyticsDtos.AnswerEvaluation> onePassParseBatch() {
+        return parser.parseBatch(batchEvaluation, batchQuestionTypes);
+    }
+
+    private static String corpus(String name) throws IOException {
+        try (InputStream in = EvaluationParserBenchmark.class.getClassLoader()
+                .getResourceAsStream("evaluation-corpus/" + name)) {
+            if (in == null) {
+                throw new IllegalStateException("Missing test resource evaluation-corpus/" + name);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    // Код ниже - разбор из InterviewAnalyticsService до перехода на EvaluationParser (без изменений по сути)
+
+    private Map<Integer, AnalyticsDtos.AnswerEvaluation> legacyParseBatchEvaluation(
+            String json, Map<Integer, ChatMessage.QuestionType> questionTypes) {
+        Map<Integer, AnalyticsDtos.AnswerEvaluation> parsed = new HashMap<>();
+
+        JsonNode items;
+        try {
+            items = objectMapper.readTree(json);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Invalid batch evaluation JSON", e);
+        }
+        for (JsonNode item : items) {
+            int id = item.path("id").asInt(-1);
+            ChatMessage.QuestionType questionType = questionTypes.get(id);
+            JsonNode score = item.path("score");
+            String feedback = item.path("feedback").asText("");
+            if (questionType == null || !score.canConvertToInt() || score.asInt() < 0 || score.asInt() > 10
+                    || feedback.isBlank()) {
+                continue;
+            }
+            parsed.put(id, AnalyticsDtos.AnswerEvaluation.builder()
+                    .score(score.asInt())
+                    .feedback(feedback)
+                    .strengths(legacyTextList(item.path("strengths")))
+                    .improvements(legacyTextList(item.path("improvements")))
+                    .questionType(questionType.name())
+                    .build());
+        }
+        return parsed;
+    }
+
+    private static List<String> legacyTextList(JsonNode array) {
+        List<String> values = new ArrayList<>();
+        for (JsonNode value : array) {
+            if (!value.asText("").isBlank()) {
+                values.add(value.asText());
+            }
+        }
+        return values;
+    }
+
+    private static AnalyticsDtos.AnswerEvaluation legacyParseAIEvaluation(String aiResponse,
+                                                                          ChatMessage.QuestionType questionType) {
+        return AnalyticsDtos.AnswerEvaluation.builder()
+                .score(legacyExtractScore(aiResponse))
+                .feedback(legacyExtractSection(aiResponse, "Feedback:"))
+                .strengths(legacyExtractList(aiResponse, "Strengths:"))
+                .improvements(legacyExtractList(aiResponse, "Improvements:"))
+                .questionType(questionType.name())
+                .build();
+    }
+
+    private static int legacyExtractScore(String text) {
+        String[] lines = text.split("\n");
+        for (String line : lines) {
+            if (line.startsWith("Score:")) {
+                String scoreStr = line.replace("Score:", "").replace("/10", "").trim();
+                try {
+                    return Integer.parseInt(scoreStr);
+                } catch (NumberFormatException e) {
+                    return 7;
+                }
+            }
+        }
+        return 7;
+    }
+
+    private static String legacyExtractSection(String text, String sectionName) {
+        String[] lines = text.split("\n");
+        for (String line : lines) {
+            if (line.startsWith(sectionName)) {
+                return line.replace(sectionName, "").trim();
+            }
+        }
+        return "Good answer overall.";
+    }
+
+    private static List<String> legacyExtractList(String text, String sectionName) {
+        List<String> items = new ArrayList<>();
+        String[] lines = text.split("\n");
+        boolean inSection = false;
+
+        for (String line : lines) {
+            if (line.startsWith(sectionName)) {
+                inSection = true;
+                continue;
+            }
+
+            if (inSection && line.startsWith("-")) {
+                items.add(line.replace("-", "").trim());
+            } else if (inSection && !line.startsWith("-") && !line.trim().isEmpty()) {
+                break;
+            }
+        }
+
+        return items.isEmpty() ? List.of("Continue practicing") : items;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(EvaluationParserBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
@@ -0,0 +1,123 @@
+package com.zharkyn.aiassistant_backend.service;
+
+import com.zharkyn.aiassistant_backend.dto.AnalyticsDtos;
+import com.zharkyn.aiassistant_backend.model.ChatMessage;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+/**
+ * Фаззинг разбора оценок: ответы из evaluation-corpus (обычные, с мусором, пакетные) и их мутации -
+ * все обрезки по каждому символу и случайные правки структурными символами (фиксированный seed).
+ * Seed'ы синтетические - написаны вручную по формату ответов Gemini (см. evaluation-corpus/README.md).
+ *
+ * Инварианты: parseEvaluation либо возвращает оценку 0-10 с непустым feedback, либо бросает
+ * RuntimeException с сообщением парсера (не NPE, не IndexOutOfBounds и т.п.);
+ * parseBatch никогда не бросает и возвращает только валидные оценки с известными id.
+ */
+class EvaluationParserFuzzTest {
+
+    private static final String CORPUS = "evaluation-corpus";
+    private static final int RANDOM_MUTATIONS = 500;
+    private static final String STRUCTURAL = "{}[]\",:\\ \n-/0123456789.eE+nulltrue";
+    private static final Set<String> PARSER_ERRORS = Set.of("Empty AI evaluation", "Could not parse AI evaluation");
+    private static final Map<Integer, ChatMessage.QuestionType> QUESTION_TYPES = Map.of(
+            1, ChatMessage.QuestionType.BACKGROUND,
+            2, ChatMessage.QuestionType.SITUATIONAL,
+            3, ChatMessage.QuestionType.TECHNICAL);
+
+    private final EvaluationParser parser = new EvaluationParser();
+
+    static Stream<Path> corpus() throws IOException, URISyntaxException {
+        URL directory = EvaluationParserFuzzTest.class.getClassLoader().getResource(CORPUS);
+        assertThat(directory).as("test resource " + CORPUS).isNotNull();
+        try (Stream<Path> files = Files.list(Path.of(directory.toURI()))) {
+            return files.filter(file -> file.toString().endsWith(".json") || file.toString().endsWith(".txt"))
+                    .sorted().toList().stream();
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("corpus")
+    void corpusSeedsAndMutationsKeepInvariants(Path seedFile) throws IOException {
+        String seed = Files.readString(seedFile, StandardCharsets.UTF_8);
+        for (String input : mutations(seed, seedFile.getFileName().toString().hashCode())) {
+            checkSingle(input);
+            checkBatch(input);
+        }
+    }
+
+    private void checkSingle(String input) {
+        AnalyticsDtos.AnswerEvaluation evaluation;
+        try {
+            evaluation = parser.parseEvaluation(input, ChatMessage.QuestionType.TECHNICAL);
+        } catch (RuntimeException e) {
+            if (e.getClass() != RuntimeException.class || !PARSER_ERRORS.contains(e.getMessage())) {
+                fail("Unexpected exception for input: " + input, e);
+            }
+            return;
+        }
+        assertThat(evaluation.getScore()).as(input).isBetween(EvaluationParser.MIN_SCORE, EvaluationParser.MAX_SCORE);
+        assertThat(evaluation.getFeedback()).as(input).isNotBlank();
+        assertThat(evaluation.getStrengths()).as(input).doesNotContainNull();
+        assertThat(evaluation.getImprovements()).as(input).doesNotContainNull();
+    }
+
+    private void checkBatch(String input) {
+        Map<Integer, AnalyticsDtos.AnswerEvaluation> parsed;
+        try {
+            parsed = parser.parseBatch(input, QUESTION_TYPES);
+        } catch (RuntimeException e) {
+            fail("parseBatch threw for input: " + input, e);
+            return;
+        }
+        assertThat(QUESTION_TYPES.keySet()).as(input).containsAll(parsed.keySet());
+        parsed.forEach((id, evaluation) -> {
+            assertThat(evaluation.getScore()).as(input).isBetween(EvaluationParser.MIN_SCORE, EvaluationParser.MAX_SCORE);
+            assertThat(evaluation.getFeedback()).as(input).isNotBlank();
+            assertThat(evaluation.getQuestionType()).isEqualTo(QUESTION_TYPES.get(id).name());
+        });
+    }
+
+    /**
+     * Сам seed, все его префиксы (оборванный ответ модели) и случайные замены/вставки/удаления
+     */
+    private static List<String> mutations(String seed, long randomSeed) {
+        List<String> inputs = new ArrayList<>();
+        inputs.add(seed);
+        for (int length = 0; length < seed.length(); length++) {
+            inputs.add(seed.substring(0, length));
+        }
+        Random random = new Random(randomSeed);
+        for (int i = 0; i < RANDOM_MUTATIONS; i++) {
+            StringBuilder mutated = new StringBuilder(seed);
+            int edits = 1 + random.nextInt(4);
+            for (int e = 0; e < edits && mutated.length() > 0; e++) {
+                int position = random.nextInt(mutated.length());
+                char symbol = STRUCTURAL.charAt(random.nextInt(STRUCTURAL.length()));
+                switch (random.nextInt(3)) {
+                    case 0 -> mutated.setCharAt(position, symbol);
+                    case 1 -> mutated.insert(position, symbol);
+                    default -> mutated.deleteCharAt(position);
+                }
+            }
+            inputs.add(mutated.toString());
+        }
+        return inputs;
+    }
+}
@@ -0,0 +1,170 @@
+package com.zharkyn.aiassistant_backend.service;
+
+import com.zharkyn.aiassistant_backend.dto.AnalyticsDtos;
+import com.zharkyn.aiassistant_backend.model.ChatMessage;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EvaluationParserTest {
+
+    private static final Map<Integer, ChatMessage.QuestionType> QUESTION_TYPES = Map.of(
+            1, ChatMessage.QuestionType.BACKGROUND,
+            2, ChatMessage.QuestionType.SITUATIONAL,
+            3, ChatMessage.QuestionType.TECHNICAL);
+
+    private final EvaluationParser parser = new EvaluationParser();
+
+    @Test
+    void parsesJsonEvaluation() {
+        AnalyticsDtos.AnswerEvaluation evaluation = parser.parseEvaluation(
+                "{\"score\": 8, \"feedback\": \" Good answer \", \"strengths\": [\"Clear\", \" \"],"
+                        + " \"improvements\": [\"Add numbers\"], \"unknown\": {\"a\": [1]}}",
+                ChatMessage.QuestionType.TECHNICAL);
+
+        assertThat(evaluation.getScore()).isEqualTo(8);
+        assertThat(evaluation.getFeedback()).isEqualTo("Good answer");
+        assertThat(evaluation.getStrengths()).containsExactly("Clear");
+        assertThat(evaluation.getImprovements()).containsExactly("Add numbers");
+        assertThat(evaluation.getQuestionType()).isEqualTo("TECHNICAL");
+    }
+
+    @Test
+    void findsJsonAfterProseAndRoundsFractionalScore() {
+        AnalyticsDtos.AnswerEvaluation evaluation = parser.parseEvaluation(
+                "Sure! ```json\n{\"score\": 6.6, \"feedback\": \"Fine\"}\n```",
+                ChatMessage.QuestionType.BACKGROUND);
+
+        assertThat(evaluation.getScore()).isEqualTo(7);
+        assertThat(evaluation.getStrengths()).isEmpty();
+    }
+
+    @Test
+    void acceptsScoreAsString() {
+        AnalyticsDtos.AnswerEvaluation evaluation = parser.parseEvaluation(
+                "{\"score\": \"9/10\", \"feedback\": \"Strong\"}", ChatMessage.QuestionType.SITUATIONAL);
+
+        assertThat(evaluation.getScore()).isEqualTo(9);
+    }
+
+    @Test
+    void parsesTextFormat() {
+        AnalyticsDtos.AnswerEvaluation evaluation = parser.parseEvaluation("""
+                Score: 7/10
+                Feedback: Reasonable, lacks detail.
+                Strengths:
+                - Honest
+                -
+                Improvements:
+                - Give an example
+                Some trailing note
+                - not an improvement
+                """, ChatMessage.QuestionType.BACKGROUND);
+
+        assertThat(evaluation.getScore()).isEqualTo(7);
+        assertThat(evaluation.getFeedback()).isEqualTo("Reasonable, lacks detail.");
+        assertThat(evaluation.getStrengths()).containsExactly("Honest");
+        assertThat(evaluation.getImprovements()).containsExactly("Give an example");
+    }
+
+    @Test
+    void fallsBackToTextWhenJsonIsBroken() {
+        AnalyticsDtos.AnswerEvaluation evaluation = parser.parseEvaluation(
+                "Score: 5/10\nFeedback: Partial {\"score\": ", ChatMessage.QuestionType.TECHNICAL);
+
+        assertThat(evaluation.getScore()).isEqualTo(5);
+    }
+
+    @Test
+    void rejectsOutOfRangeScore() {
+        assertThatThrownBy(() -> parser.parseEvaluation(
+                "{\"score\": 11, \"feedback\": \"Too generous\"}", ChatMessage.QuestionType.TECHNICAL))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessage("Could not parse AI evaluation");
+        assertThatThrownBy(() -> parser.parseEvaluation(
+                "Score: -1/10\nFeedback: Negative", ChatMessage.QuestionType.TECHNICAL))
+                .hasMessage("Could not parse AI evaluation");
+    }
+
+    @Test
+    void acceptsScoreBounds() {
+        assertThat(parser.parseEvaluation("{\"score\": 0, \"feedback\": \"No answer\"}",
+                ChatMessage.QuestionType.TECHNICAL).getScore()).isEqualTo(EvaluationParser.MIN_SCORE);
+        assertThat(parser.parseEvaluation("{\"score\": 10, \"feedback\": \"Perfect\"}",
+                ChatMessage.QuestionType.TECHNICAL).getScore()).isEqualTo(EvaluationParser.MAX_SCORE);
+    }
+
+    @Test
+    void rejectsEvaluationWithoutScoreOrFeedback() {
+        assertThatThrownBy(() -> parser.parseEvaluation("{\"feedback\": \"No score\"}",
+                ChatMessage.QuestionType.TECHNICAL)).hasMessage("Could not parse AI evaluation");
+        assertThatThrownBy(() -> parser.parseEvaluation("{\"score\": 6, \"feedback\": \"  \"}",
+                ChatMessage.QuestionType.TECHNICAL)).hasMessage("Could not parse AI evaluation");
+        assertThatThrownBy(() -> parser.parseEvaluation("I cannot evaluate this answer.",
+                ChatMessage.QuestionType.TECHNICAL)).hasMessage("Could not parse AI evaluation");
+    }
+
+    @Test
+    void rejectsEmptyResponse() {
+        assertThatThrownBy(() -> parser.parseEvaluation(null, ChatMessage.QuestionType.TECHNICAL))
+                .hasMessage("Empty AI evaluation");
+        assertThatThrownBy(() -> parser.parseEvaluation(" \n", ChatMessage.QuestionType.TECHNICAL))
+                .hasMessage("Empty AI evaluation");
+    }
+
+    @Test
+    void parsesBatchByQuestionId() {
+        Map<Integer, AnalyticsDtos.AnswerEvaluation> parsed = parser.parseBatch("""
+                [{"id": 1, "score": 8, "feedback": "Concise"},
+                 {"id": 3, "score": 4, "feedback": "Wrong complexity", "improvements": ["Review Big-O"]}]
+                """, QUESTION_TYPES);
+
+        assertThat(parsed).containsOnlyKeys(1, 3);
+        assertThat(parsed.get(1).getQuestionType()).isEqualTo("BACKGROUND");
+        assertThat(parsed.get(3).getScore()).isEqualTo(4);
+        assertThat(parsed.get(3).getImprovements()).containsExactly("Review Big-O");
+    }
+
+    @Test
+    void skipsInvalidUnknownAndDuplicateBatchItems() {
+        Map<Integer, AnalyticsDtos.AnswerEvaluation> parsed = parser.parseBatch("""
+                [null, 7, ["nested"],
+                 {"id": 99, "score": 6, "feedback": "Unknown id"},
+                 {"id": "2", "score": 6, "feedback": "String id"},
+                 {"id": 2, "score": 12, "feedback": "Out of range"},
+                 {"id": 1, "score": 6, "feedback": "First"},
+                 {"id": 1, "score": 9, "feedback": "Duplicate"}]
+                """, QUESTION_TYPES);
+
+        assertThat(parsed).containsOnlyKeys(1);
+        assertThat(parsed.get(1).getFeedback()).isEqualTo("First");
+    }
+
+    @Test
+    void keepsItemsParsedBeforeTruncation() {
+        Map<Integer, AnalyticsDtos.AnswerEvaluation> parsed = parser.parseBatch(
+                "[{\"id\": 1, \"score\": 8, \"feedback\": \"Done\"}, {\"id\": 2, \"score\": 5, \"feedb",
+                QUESTION_TYPES);
+
+        assertThat(parsed).containsOnlyKeys(1);
+    }
+
+    @Test
+    void returnsEmptyBatchForNonArray() {
+        assertThat(parser.parseBatch(null, QUESTION_TYPES)).isEmpty();
+        assertThat(parser.parseBatch("", QUESTION_TYPES)).isEmpty();
+        assertThat(parser.parseBatch("{\"id\": 1, \"score\": 8, \"feedback\": \"Object\"}", QUESTION_TYPES)).isEmpty();
+    }
+
+    @Test
+    void survivesDeepNesting() {
+        String deep = "[".repeat(5000) + "]".repeat(5000);
+
+        assertThat(parser.parseBatch(deep, QUESTION_TYPES)).isEmpty();
+        assertThatThrownBy(() -> parser.parseEvaluation("{\"a\":" + deep + "}", ChatMessage.QuestionType.TECHNICAL))
+                .hasMessage("Could not parse AI evaluation");
+    }
+}
@@ -0,0 +1,63 @@
+package com.zharkyn.aiassistant_backend.service;
+
+import com.zharkyn.aiassistant_backend.dto.GeminiDtos;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GeminiCachedContentClientTest {
+
+    private static final String API_URL =
+            "https://generativelanguage.googleapis.com/v1beta/models/gemini-2.5-flash:generateContent";
+
+    private final RecordingExchangeFunction cachedContentsApi = new RecordingExchangeFunction(recorded ->
+            HttpMethod.DELETE.equals(recorded.request().method())
+                    ? RecordingExchangeFunction.json(HttpStatus.OK, "{}")
+                    : RecordingExchangeFunction.json(HttpStatus.OK,
+                            "{\"name\":\"cachedContents/abc123\",\"expireTime\":\"2026-01-01T00:30:00Z\"}"));
+
+    private final GeminiCachedContentClient client = new GeminiCachedContentClient(
+            WebClient.builder().exchangeFunction(cachedContentsApi).build(), API_URL, "test-key");
+
+    @Test
+    void createsCacheForConfiguredModel() {
+        GeminiDtos.Content prefix = GeminiDtos.Content.builder()
+                .parts(List.of(GeminiDtos.Part.builder().text("Interview prefix").build()))
+                .build();
+
+        String cacheName = client.create(prefix, Duration.ofMinutes(30)).block();
+
+        assertThat(cacheName).isEqualTo("cachedContents/abc123");
+        RecordingExchangeFunction.RecordedRequest recorded = cachedContentsApi.requests().get(0);
+        assertThat(recorded.request().method()).isEqualTo(HttpMethod.POST);
+        assertThat(recorded.request().url().getPath()).isEqualTo("/v1beta/cachedContents");
+        assertThat(recorded.request().url().getQuery()).isEqualTo("key=test-key");
+        assertThat(recorded.body().path("model").asText()).isEqualTo("models/gemini-2.5-flash");
+        assertThat(recorded.body().path("ttl").asText()).isEqualTo("1800s");
+        assertThat(recorded.body().path("systemInstruction").path("parts").path(0).path("text").asText())
+                .isEqualTo("Interview prefix");
+    }
+
+    @Test
+    void deletesCacheByName() {
+        client.delete("cachedContents/abc123").block();
+
+        RecordingExchangeFunction.RecordedRequest recorded = cachedContentsApi.requests().get(0);
+        assertThat(recorded.request().method()).isEqualTo(HttpMethod.DELETE);
+        assertThat(recorded.request().url().getPath()).isEqualTo("/v1beta/cachedContents/abc123");
+    }
+
+    @Test
+    void rejectsUrlWithoutModel() {
+        assertThatThrownBy(() -> new GeminiCachedContentClient(WebClient.create(),
+                "https://generativelanguage.googleapis.com/v1beta/generateContent", "test-key"))
+                .isInstanceOf(IllegalStateException.class);
+    }
+}
@@ -0,0 +1,204 @@
+package com.zharkyn.aiassistant_backend.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.zharkyn.aiassistant_backend.model.ChatMessage;
+import com.zharkyn.aiassistant_backend.model.InterviewSession;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Кеширование префикса интервью: GeminiService поверх заглушек cachedContents и generateContent
+ */
+class GeminiServiceContextCacheTest {
+
+    private static final String API_URL =
+            "https://generativelanguage.googleapis.com/v1beta/models/gemini-2.5-flash:generateContent";
+    private static final String NEXT_QUESTION = "How do you design an idempotent API?";
+
+    private final InMemoryGeminiContextCache contextCache = new InMemoryGeminiContextCache();
+    private final RecordingExchangeFunction geminiApi = new RecordingExchangeFunction(this::respond);
+    private final InterviewSession session = InterviewSession.builder()
+            .id("session-1")
+            .language("en")
+            .position("Backend Engineer")
+            .jobDescription("Java, Spring Boot, Firestore. ".repeat(20))
+            .build();
+    private volatile HttpStatus failNextRequestsWith;
+
+    @Test
+    void createsPrefixCacheOnceAndReferencesIt() {
+        GeminiService geminiService = geminiService(true, 10);
+
+        assertThat(nextResponse(geminiService)).isEqualTo(NEXT_QUESTION);
+        assertThat(nextResponse(geminiService)).isEqualTo(NEXT_QUESTION);
+
+        assertThat(contextCache.createCalls()).isEqualTo(1);
+        assertThat(geminiApi.requests()).hasSize(2)
+                .allSatisfy(recorded -> {
+                    assertThat(recorded.body().path("cachedContent").asText()).isEqualTo("cachedContents/test-1");
+                    assertThat(recorded.body().has("systemInstruction")).isFalse();
+                });
+        assertThat(contextCache.prefixOf("cachedContents/test-1").getParts().get(0).getText())
+                .contains("Backend Engineer", "Spring Boot");
+    }
+
+    @Test
+    void warmedPrefixIsUsedByFirstTurn() {
+        GeminiService geminiService = geminiService(true, 10);
+
+        geminiService.warmInterviewPrefix(session);
+        nextResponse(geminiService);
+
+        assertThat(contextCache.createCalls()).isEqualTo(1);
+        assertThat(lastRequest().path("cachedContent").asText()).isEqualTo("cachedContents/test-1");
+    }
+
+    @Test
+    void keepsBaselineRequestForShortPrefix() {
+        GeminiService geminiService = geminiService(true, 100_000);
+
+        nextResponse(geminiService);
+
+        assertThat(contextCache.createCalls()).isZero();
+        assertBaselineRequest(lastRequest());
+    }
+
+    @Test
+    void keepsBaselineRequestWhenCachingDisabled() {
+        GeminiService geminiService = geminiService(false, 10);
+
+        nextResponse(geminiService);
+
+        assertThat(contextCache.createCalls()).isZero();
+        assertBaselineRequest(lastRequest());
+    }
+
+    @Test
+    void fallsBackToBaselineWhenCacheCannotBeCreatedAndDoesNotRetryEveryTurn() {
+        contextCache.setUnavailable(true);
+        GeminiService geminiService = geminiService(true, 10);
+
+        assertThat(nextResponse(geminiService)).isEqualTo(NEXT_QUESTION);
+        nextResponse(geminiService);
+
+        assertThat(contextCache.createCalls()).isEqualTo(1);
+        assertThat(geminiApi.requests()).allSatisfy(recorded -> assertBaselineRequest(recorded.body()));
+    }
+
+    @Test
+    void retriesWithoutCacheWhenGeminiRejectsExpiredCache() {
+        GeminiService geminiService = geminiService(true, 10);
+        nextResponse(geminiService);
+        contextCache.expire("cachedContents/test-1");
+
+        assertThat(nextResponse(geminiService)).isEqualTo(NEXT_QUESTION);
+
+        List<RecordingExchangeFunction.RecordedRequest> requests = geminiApi.requests();
+        assertThat(requests).hasSize(3);
+        assertThat(requests.get(1).body().path("cachedContent").asText()).isEqualTo("cachedContents/test-1");
+        assertBaselineRequest(requests.get(2).body());
+        assertThat(contextCache.deleted()).containsExactly("cachedContents/test-1");
+
+        // Локальная запись сброшена - следующий ход создает новый кеш
+        nextResponse(geminiService);
+        assertThat(contextCache.createCalls()).isEqualTo(2);
+        assertThat(lastRequest().path("cachedContent").asText()).isEqualTo("cachedContents/test-2");
+    }
+
+    @Test
+    void doesNotRetryOnServerError() {
+        assertCacheKeptOnError(HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    @Test
+    void doesNotTreatRateLimitAsStaleCache() {
+        assertCacheKeptOnError(HttpStatus.TOO_MANY_REQUESTS);
+    }
+
+    @Test
+    void doesNotTreatBadRequestAsStaleCache() {
+        assertCacheKeptOnError(HttpStatus.BAD_REQUEST);
+    }
+
+    /**
+     * Ошибка, не связанная с кешем: уходит вызывающему без повтора, кеш не сбрасывается и не удаляется
+     */
+    private void assertCacheKeptOnError(HttpStatus status) {
+        GeminiService geminiService = geminiService(true, 10);
+        nextResponse(geminiService);
+        failNextRequestsWith = status;
+
+        assertThatThrownBy(() -> nextResponse(geminiService)).isInstanceOf(WebClientResponseException.class);
+        assertThat(geminiApi.requests()).hasSize(2);
+        assertThat(contextCache.deleted()).isEmpty();
+
+        failNextRequestsWith = null;
+        nextResponse(geminiService);
+        assertThat(contextCache.createCalls()).isEqualTo(1);
+        assertThat(lastRequest().path("cachedContent").asText()).isEqualTo("cachedContents/test-1");
+    }
+
+    @Test
+    void releaseDeletesPrefixCache() {
+        GeminiService geminiService = geminiService(true, 10);
+        nextResponse(geminiService);
+
+        geminiService.releaseInterviewPrefix(session.getId());
+
+        assertThat(contextCache.deleted()).containsExactly("cachedContents/test-1");
+        assertThat(contextCache.contains("cachedContents/test-1")).isFalse();
+    }
+
+    private ClientResponse respond(RecordingExchangeFunction.RecordedRequest recorded) {
+        HttpStatus failure = failNextRequestsWith;
+        if (failure != null) {
+            return RecordingExchangeFunction.json(failure,
+                    "{\"error\":{\"code\":" + failure.value() + ",\"message\":\"" + failure.getReasonPhrase() + "\"}}");
+        }
+        String cacheName = recorded.body().path("cachedContent").asText(null);
+        if (cacheName != null && !contextCache.contains(cacheName)) {
+            return RecordingExchangeFunction.json(HttpStatus.NOT_FOUND,
+                    "{\"error\":{\"code\":404,\"message\":\"CachedContent not found\",\"status\":\"NOT_FOUND\"}}");
+        }
+        return RecordingExchangeFunction.json(HttpStatus.OK,
+                "{\"candidates\":[{\"content\":{\"role\":\"model\",\"parts\":[{\"text\":\"" + NEXT_QUESTION + "\"}]},"
+                        + "\"finishReason\":\"STOP\"}]}");
+    }
+
+    private GeminiService geminiService(boolean cacheEnabled, int minTokens) {
+        WebClient webClient = WebClient.builder().exchangeFunction(geminiApi).build();
+        return new GeminiService(webClient, API_URL, "test-key", contextCache, cacheEnabled, minTokens, 30,
+                new SimpleMeterRegistry());
+    }
+
+    private String nextResponse(GeminiService geminiService) {
+        List<ChatMessage> history = List.of(
+                ChatMessage.builder().role(ChatMessage.MessageRole.MODEL).content("Tell me about yourself").build(),
+                ChatMessage.builder().role(ChatMessage.MessageRole.USER).content("I build payment APIs").build());
+        return geminiService.generateNextResponse(session, null, history,
+                ChatMessage.QuestionType.TECHNICAL, 2, 20).block();
+    }
+
+    private JsonNode lastRequest() {
+        List<RecordingExchangeFunction.RecordedRequest> requests = geminiApi.requests();
+        return requests.get(requests.size() - 1).body();
+    }
+
+    /**
+     * Запрос как до кеширования: только история и follow-up, описание вакансии не повторяется
+     */
+    private static void assertBaselineRequest(JsonNode request) {
+        assertThat(request.has("cachedContent")).isFalse();
+        assertThat(request.has("systemInstruction")).isFalse();
+        assertThat(request.toString()).doesNotContain("Backend Engineer");
+    }
+}
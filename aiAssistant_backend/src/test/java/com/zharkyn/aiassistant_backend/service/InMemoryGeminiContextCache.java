@@ -0,0 +1,71 @@
+package com.zharkyn.aiassistant_backend.service;
+
+import com.zharkyn.aiassistant_backend.dto.GeminiDtos;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Локальная заглушка cachedContents для тестов: префиксы хранятся в памяти.
+ * Позволяет "истечь" кеш раньше локальной записи и отказать в создании.
+ */
+class InMemoryGeminiContextCache implements GeminiContextCache {
+
+    private final Map<String, GeminiDtos.Content> caches = new ConcurrentHashMap<>();
+    private final List<String> deleted = new CopyOnWriteArrayList<>();
+    private final AtomicInteger createCalls = new AtomicInteger();
+    private volatile boolean unavailable;
+
+    @Override
+    public Mono<String> create(GeminiDtos.Content systemInstruction, Duration ttl) {
+        return Mono.fromCallable(() -> {
+            int call = createCalls.incrementAndGet();
+            if (unavailable) {
+                throw new IllegalStateException("cachedContents is unavailable");
+            }
+            String name = "cachedContents/test-" + call;
+            caches.put(name, systemInstruction);
+            return name;
+        });
+    }
+
+    @Override
+    public Mono<Void> delete(String cacheName) {
+        return Mono.fromRunnable(() -> {
+            caches.remove(cacheName);
+            deleted.add(cacheName);
+        });
+    }
+
+    boolean contains(String cacheName) {
+        return caches.containsKey(cacheName);
+    }
+
+    GeminiDtos.Content prefixOf(String cacheName) {
+        return caches.get(cacheName);
+    }
+
+    /**
+     * Кеш истек на стороне Gemini, а локальная запись еще жива
+     */
+    void expire(String cacheName) {
+        caches.remove(cacheName);
+    }
+
+    void setUnavailable(boolean unavailable) {
+        this.unavailable = unavailable;
+    }
+
+    int createCalls() {
+        return createCalls.get();
+    }
+
+    List<String> deleted() {
+        return deleted;
+    }
+}
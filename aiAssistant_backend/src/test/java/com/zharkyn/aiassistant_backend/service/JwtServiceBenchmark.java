@@ -0,0 +1,92 @@
+package com.zharkyn.aiassistant_backend.service;
+
+import com.zharkyn.aiassistant_backend.model.User;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.security.Key;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Разбор и проверка JWT: старый путь (ключ и парсер на каждый вызов, токен разбирается дважды -
+ * subject и expiration) против JwtService с закешированным парсером и одним parseToken на запрос.
+ *
+ * Запуск: mvn test-compile, затем main этого класса с test classpath
+ * (например, из IDE или mvn exec:java -Dexec.classpathScope=test -Dexec.mainClass=...).
+ * Результат - токенов в секунду для каждого варианта.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtServiceBenchmark {
+
+    private static final String SECRET = "bXktc3VwZXItc2VjcmV0LWtleS1mb3Itand0LXNlY3JldC1rZXktYXV0aGVudGljYXRpb24=";
+
+    private JwtService jwtService;
+    private User user;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtService = new JwtService();
+        ReflectionTestUtils.setField(jwtService, "jwtSecret", SECRET);
+        ReflectionTestUtils.setField(jwtService, "jwtExpiration", TimeUnit.HOURS.toMillis(1));
+        jwtService.init();
+
+        user = User.builder().id("user-1").email("candidate@example.com").credentialsVersion(0L).build();
+        token = jwtService.generateToken(user);
+    }
+
+    /**
+     * Как было до кеширования: getSigningKey() и новый парсер на каждый extractClaim,
+     * isTokenValid разбирает токен второй раз ради expiration
+     */
+    @Benchmark
+    public boolean legacyParseAndValidate() {
+        String username = legacyExtractAllClaims(token).getSubject();
+        Date expiration = legacyExtractAllClaims(token).getExpiration();
+        return username.equals(user.getUsername()) && !expiration.before(new Date());
+    }
+
+    @Benchmark
+    public boolean cachedParseAndValidate() {
+        Claims claims = jwtService.parseToken(token);
+        return jwtService.isTokenValid(claims, user);
+    }
+
+    private static Claims legacyExtractAllClaims(String token) {
+        Key key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET));
+        return Jwts.parserBuilder()
+                .setSigningKey(key)
+                .build()
+                .parseClaimsJws(token)
+                .getBody();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JwtServiceBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
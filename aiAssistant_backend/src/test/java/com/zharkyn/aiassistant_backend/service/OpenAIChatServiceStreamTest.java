@@ -0,0 +1,77 @@
+package com.zharkyn.aiassistant_backend.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Разбор SSE-чанков chat completions в streamNextQuestion: наружу идут только choices[].delta.content
+ */
+class OpenAIChatServiceStreamTest {
+
+    @Test
+    void streamsContentDeltasUntilDone() {
+        List<String> deltas = stream(
+                "{\"choices\":[{\"index\":0,\"delta\":{\"role\":\"assistant\"}}]}",
+                "{\"choices\":[{\"index\":0,\"delta\":{\"content\":\"Tell\"}}]}",
+                "{\"choices\":[{\"index\":0,\"delta\":{\"content\":\" me about yourself\"}}]}",
+                "{\"choices\":[{\"index\":0,\"delta\":{},\"finish_reason\":\"stop\"}]}",
+                "[DONE]",
+                "{\"choices\":[{\"index\":0,\"delta\":{\"content\":\"after done\"}}]}");
+
+        assertThat(deltas).containsExactly("Tell", " me about yourself");
+    }
+
+    @Test
+    void takesContentOnlyFromDeltaItself() {
+        List<String> deltas = stream(
+                "{\"choices\":[{\"message\":{\"content\":\"message\"},\"delta\":{\"content\":\"delta\"}}]}",
+                "{\"choices\":[{\"delta\":{\"tool_calls\":[{\"content\":\"nested\"}],\"content\":\"own\"}}]}",
+                "{\"content\":\"top level\",\"choices\":[{\"delta\":{\"role\":\"assistant\"}}]}",
+                "[DONE]");
+
+        assertThat(deltas).containsExactly("delta", "own");
+    }
+
+    @Test
+    void skipsMalformedEmptyAndNonStringChunks() {
+        List<String> deltas = stream(
+                "{\"choices\":[{\"delta\":{\"content\":",
+                "not json",
+                "{\"choices\":[{\"delta\":{\"content\":\"\"}}]}",
+                "{\"choices\":[{\"delta\":{\"content\":null}}]}",
+                "{\"choices\":[{\"delta\":{\"content\":42}}]}",
+                "{\"choices\":[{\"delta\":{\"content\":\"ok\"}}]}",
+                "[DONE]");
+
+        assertThat(deltas).containsExactly("ok");
+    }
+
+    private static List<String> stream(String... chunks) {
+        StringBuilder body = new StringBuilder();
+        for (String chunk : chunks) {
+            body.append("data: ").append(chunk).append("\n\n");
+        }
+        WebClient webClient = WebClient.builder()
+                .exchangeFunction(request -> Mono.just(ClientResponse.create(HttpStatus.OK)
+                        .header(HttpHeaders.CONTENT_TYPE, MediaType.TEXT_EVENT_STREAM_VALUE)
+                        .body(body.toString())
+                        .build()))
+                .build();
+
+        OpenAIChatService service = new OpenAIChatService(webClient);
+        ReflectionTestUtils.setField(service, "chatModel", "gpt-4o-mini");
+        return service.streamNextQuestion("Backend developer", "Acme", "Java", 1, null)
+                .collectList()
+                .block();
+    }
+}
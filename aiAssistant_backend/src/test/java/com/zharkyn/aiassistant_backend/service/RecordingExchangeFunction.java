@@ -0,0 +1,91 @@
+package com.zharkyn.aiassistant_backend.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.HttpMessageWriter;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.mock.http.client.reactive.MockClientHttpRequest;
+import org.springframework.web.reactive.function.BodyInserter;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import org.springframework.web.reactive.function.client.ExchangeStrategies;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+/**
+ * Заглушка HTTP для WebClient: запоминает запросы (метод, URL, JSON тела) и отвечает через responder
+ */
+class RecordingExchangeFunction implements ExchangeFunction {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final BodyInserter.Context INSERT_CONTEXT = new BodyInserter.Context() {
+        @Override
+        public List<HttpMessageWriter<?>> messageWriters() {
+            return ExchangeStrategies.withDefaults().messageWriters();
+        }
+
+        @Override
+        public Optional<ServerHttpRequest> serverRequest() {
+            return Optional.empty();
+        }
+
+        @Override
+        public Map<String, Object> hints() {
+            return Map.of();
+        }
+    };
+
+    private final Function<RecordedRequest, ClientResponse> responder;
+    private final List<RecordedRequest> requests = new CopyOnWriteArrayList<>();
+
+    RecordingExchangeFunction(Function<RecordedRequest, ClientResponse> responder) {
+        this.responder = responder;
+    }
+
+    @Override
+    public Mono<ClientResponse> exchange(ClientRequest request) {
+        MockClientHttpRequest captured = new MockClientHttpRequest(request.method(), request.url());
+        return request.body().insert(captured, INSERT_CONTEXT)
+                .then(Mono.defer(() -> captured.getBodyAsString().defaultIfEmpty("")))
+                .map(body -> {
+                    RecordedRequest recorded = new RecordedRequest(request, readJson(body));
+                    requests.add(recorded);
+                    return responder.apply(recorded);
+                });
+    }
+
+    List<RecordedRequest> requests() {
+        return requests;
+    }
+
+    static ClientResponse json(HttpStatus status, String body) {
+        return ClientResponse.create(status)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .body(body)
+                .build();
+    }
+
+    private static JsonNode readJson(String body) {
+        if (body.isEmpty()) {
+            return OBJECT_MAPPER.missingNode();
+        }
+        try {
+            return OBJECT_MAPPER.readTree(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Request body is not JSON: " + body, e);
+        }
+    }
+
+    record RecordedRequest(ClientRequest request, JsonNode body) {
+    }
+}
@@ -0,0 +1,89 @@
+package com.zharkyn.aiassistant_backend.service;
+
+import com.zharkyn.aiassistant_backend.dto.AnalyticsDtos;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReportCacheTest {
+
+    private static final String INTERVIEW_ID = "interview-1";
+
+    private final ReportCache reportCache = new ReportCache(100, 60, new SimpleMeterRegistry());
+
+    @Test
+    void returnsReportBuiltAtCurrentVersion() {
+        long version = reportCache.version(INTERVIEW_ID);
+        AnalyticsDtos.InterviewReport report = report(8.0);
+
+        reportCache.put(INTERVIEW_ID, version, report);
+
+        assertThat(version).isZero();
+        assertThat(reportCache.get(INTERVIEW_ID)).isSameAs(report);
+    }
+
+    @Test
+    void missesUnknownInterview() {
+        assertThat(reportCache.get(INTERVIEW_ID)).isNull();
+    }
+
+    @Test
+    void invalidateDropsCachedReportAndBumpsVersion() {
+        reportCache.put(INTERVIEW_ID, reportCache.version(INTERVIEW_ID), report(8.0));
+
+        long newVersion = reportCache.invalidate(INTERVIEW_ID);
+
+        assertThat(newVersion).isEqualTo(1);
+        assertThat(reportCache.version(INTERVIEW_ID)).isEqualTo(1);
+        assertThat(reportCache.get(INTERVIEW_ID)).isNull();
+    }
+
+    @Test
+    void skipsReportBuiltBeforeConcurrentEvaluationWrite() {
+        long versionAtStart = reportCache.version(INTERVIEW_ID);
+        // Пока отчет строился, пришла новая оценка
+        reportCache.invalidate(INTERVIEW_ID);
+
+        reportCache.put(INTERVIEW_ID, versionAtStart, report(6.0));
+
+        assertThat(reportCache.get(INTERVIEW_ID)).isNull();
+    }
+
+    @Test
+    void consecutiveInvalidationsAreDetectable() {
+        long captured = reportCache.version(INTERVIEW_ID);
+
+        long ours = reportCache.invalidate(INTERVIEW_ID);
+        long theirs = reportCache.invalidate(INTERVIEW_ID);
+
+        // Своя запись без чужих между ними: captured + 1; иначе отчет нельзя привязывать к версии
+        assertThat(ours).isEqualTo(captured + 1);
+        assertThat(theirs).isEqualTo(captured + 2);
+    }
+
+    @Test
+    void staleVersionIsNeverCached() {
+        reportCache.put(INTERVIEW_ID, ReportCache.STALE_VERSION, report(7.0));
+
+        assertThat(reportCache.get(INTERVIEW_ID)).isNull();
+    }
+
+    @Test
+    void versionsAreTrackedPerInterview() {
+        AnalyticsDtos.InterviewReport other = report(9.0);
+        reportCache.put("interview-2", reportCache.version("interview-2"), other);
+
+        reportCache.invalidate(INTERVIEW_ID);
+
+        assertThat(reportCache.get("interview-2")).isSameAs(other);
+        assertThat(reportCache.version("interview-2")).isZero();
+    }
+
+    private static AnalyticsDtos.InterviewReport report(double overallScore) {
+        return AnalyticsDtos.InterviewReport.builder()
+                .interviewId(INTERVIEW_ID)
+                .overallScore(overallScore)
+                .build();
+    }
+}
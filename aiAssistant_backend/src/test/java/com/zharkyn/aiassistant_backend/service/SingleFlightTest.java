@@ -0,0 +1,123 @@
+package com.zharkyn.aiassistant_backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SingleFlightTest {
+
+    private final SingleFlight<String, String> singleFlight = new SingleFlight<>();
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    void concurrentCallersShareOneLoad() {
+        CompletableFuture<String> source = new CompletableFuture<>();
+
+        CompletableFuture<String> first = singleFlight.execute("audio-hash", () -> load(source));
+        CompletableFuture<String> second = singleFlight.execute("audio-hash", () -> load(source));
+
+        assertThat(second).isSameAs(first);
+        assertThat(loads).hasValue(1);
+        assertThat(singleFlight.inFlightCount()).isEqualTo(1);
+
+        source.complete("transcript");
+
+        assertThat(first).isCompletedWithValue("transcript");
+        assertThat(singleFlight.inFlightCount()).isZero();
+    }
+
+    @Test
+    void doesNotCacheCompletedResults() {
+        singleFlight.execute("audio-hash", () -> load(CompletableFuture.completedFuture("first")));
+        CompletableFuture<String> again =
+                singleFlight.execute("audio-hash", () -> load(CompletableFuture.completedFuture("second")));
+
+        assertThat(again).isCompletedWithValue("second");
+        assertThat(loads).hasValue(2);
+        assertThat(singleFlight.inFlightCount()).isZero();
+    }
+
+    @Test
+    void differentKeysLoadIndependently() {
+        CompletableFuture<String> a = singleFlight.execute("a", () -> load(new CompletableFuture<>()));
+        CompletableFuture<String> b = singleFlight.execute("b", () -> load(new CompletableFuture<>()));
+
+        assertThat(b).isNotSameAs(a);
+        assertThat(loads).hasValue(2);
+        assertThat(singleFlight.inFlightCount()).isEqualTo(2);
+    }
+
+    @Test
+    void failurePropagatesToAllCallersAndReleasesKey() {
+        CompletableFuture<String> source = new CompletableFuture<>();
+        CompletableFuture<String> first = singleFlight.execute("audio-hash", () -> load(source));
+        CompletableFuture<String> second = singleFlight.execute("audio-hash", () -> load(source));
+
+        source.completeExceptionally(new IllegalStateException("STT unavailable"));
+
+        assertThatThrownBy(first::join).hasCauseInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(second::join).hasCauseInstanceOf(IllegalStateException.class);
+        assertThat(singleFlight.inFlightCount()).isZero();
+
+        CompletableFuture<String> retry =
+                singleFlight.execute("audio-hash", () -> load(CompletableFuture.completedFuture("transcript")));
+        assertThat(retry).isCompletedWithValue("transcript");
+    }
+
+    @Test
+    void loaderExceptionIsRethrownAndReleasesKey() {
+        assertThatThrownBy(() -> singleFlight.execute("audio-hash", () -> {
+            throw new IllegalArgumentException("Recording is empty");
+        })).isInstanceOf(IllegalArgumentException.class);
+
+        assertThat(singleFlight.inFlightCount()).isZero();
+        assertThat(singleFlight.execute("audio-hash", () -> load(CompletableFuture.completedFuture("ok"))))
+                .isCompletedWithValue("ok");
+    }
+
+    @Test
+    void loadsOnceUnderContention() throws Exception {
+        int callers = 16;
+        CompletableFuture<String> source = new CompletableFuture<>();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<CompletableFuture<String>>> calls = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                calls.add(pool.submit(() -> {
+                    start.await();
+                    return singleFlight.execute("report", () -> load(source));
+                }));
+            }
+            start.countDown();
+            List<CompletableFuture<String>> results = new ArrayList<>();
+            for (Future<CompletableFuture<String>> call : calls) {
+                results.add(call.get(5, TimeUnit.SECONDS));
+            }
+            source.complete("report");
+
+            assertThat(loads).hasValue(1);
+            for (CompletableFuture<String> result : results) {
+                assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("report");
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private CompletableFuture<String> load(CompletableFuture<String> source) {
+        loads.incrementAndGet();
+        return source;
+    }
+}